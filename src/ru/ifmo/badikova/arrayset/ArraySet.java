@@ -2,25 +2,39 @@ package ru.ifmo.badikova.arrayset;
 
 import java.util.*;
 
-public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
+public class ArraySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+    private static final Object[] EMPTY = new Object[0];
 
-    private final List<E> elements;
+    // Shared by all views, sorted ascending by comparator.
+    private final Object[] elements;
+    // Window of this view in elements.
+    private final int from;
+    private final int to;
     private final Comparator<? super E> comparator;
+    private final boolean descending;
+    // Search index of a naturally ordered string set, null for other sets.
+    private final Prefixes prefixes;
 
     public ArraySet(Collection<? extends E> elements, Comparator<? super E> comparator) {
-        TreeSet<E> data = new TreeSet<>(comparator);
-        data.addAll(elements);
-        this.elements = new ArrayList<>(data);
-        this.comparator = comparator;
+        this(toSortedArray(elements, comparator), comparator);
+    }
+
+    private ArraySet(Object[] elements, Comparator<? super E> comparator) {
+        this(elements, 0, elements.length, comparator, false, prefixes(elements, comparator));
     }
 
-    private ArraySet(List<E> elements, Comparator<? super E> comparator) {
+    private ArraySet(Object[] elements, int from, int to, Comparator<? super E> comparator, boolean descending,
+                     Prefixes prefixes) {
         this.elements = elements;
+        this.from = from;
+        this.to = to;
         this.comparator = comparator;
+        this.descending = descending;
+        this.prefixes = prefixes;
     }
 
     public ArraySet() {
-        this(Collections.emptyList(), null);
+        this(EMPTY, 0, 0, null, false, null);
     }
 
     public ArraySet(Collection<? extends E> elements) {
@@ -28,86 +42,483 @@ public class ArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
     }
 
     public ArraySet(Comparator<? super E> comparator) {
-        this(Collections.emptyList(), comparator);
+        this(EMPTY, 0, 0, comparator, false, null);
+    }
+
+    // Takes elements sorted and distinct by comparator without copying them.
+    static <E> ArraySet<E> ofSorted(Object[] elements, Comparator<? super E> comparator) {
+        return new ArraySet<>(elements, comparator);
+    }
+
+    // Same as ofSorted for elements coming from outside, checking their order in one pass.
+    static <E> ArraySet<E> ofCheckedSorted(Object[] elements, Comparator<? super E> comparator) {
+        Comparator<Object> order = order(comparator);
+        for (int i = 1; i < elements.length; i++) {
+            if (order.compare(elements[i - 1], elements[i]) >= 0) {
+                throw new IllegalArgumentException("Elements are not sorted and distinct at index " + i);
+            }
+        }
+        return ofSorted(elements, comparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> order(Comparator<?> comparator) {
+        return (Comparator<Object>) (comparator == null ? Comparator.naturalOrder() : comparator);
+    }
+
+    // Sorted array of distinct elements, keeping the first of equal ones as TreeSet does.
+    // Sorted input is detected in one pass and not sorted again.
+    private static Object[] toSortedArray(Collection<?> elements, Comparator<?> comparator) {
+        Object[] array = elements.toArray();
+        if (elements instanceof SortedSet && Objects.equals(((SortedSet<?>) elements).comparator(), comparator)) {
+            return array;
+        }
+        Comparator<Object> order = order(comparator);
+        if (array.length == 1) {
+            // Type and null check of a lone element, as TreeSet does on the first insertion.
+            order.compare(array[0], array[0]);
+        }
+        for (int i = 1; i < array.length; i++) {
+            if (order.compare(array[i - 1], array[i]) > 0) {
+                // Stable, so the first of equal elements stays first.
+                Arrays.sort(array, order);
+                break;
+            }
+        }
+        int size = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (size == 0 || order.compare(array[size - 1], array[i]) != 0) {
+                array[size++] = array[i];
+            }
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
     }
 
     private void checkIsEmpty() {
-        if (elements.isEmpty()) {
+        if (isEmpty()) {
             throw new NoSuchElementException();
         }
     }
 
     @Override
     public Comparator<? super E> comparator() {
-        return comparator;
+        return descending ? Collections.reverseOrder(comparator) : comparator;
     }
 
-    private int findIndex(E element) {
-        int index = Collections.binarySearch(elements, element, comparator);
-        return index >= 0 ? index : -index - 1;
+    @SuppressWarnings("unchecked")
+    private E get(int index) {
+        return (E) elements[index];
     }
 
-    private SortedSet<E> subSet(E fromElement, E toElement, boolean inclusive) {
-//        if (fromElement == null || toElement == null) {
-//            throw new IllegalArgumentException("Not null arguments expected");
-//        }
-        int from = findIndex(fromElement);
-        int to = findIndex(toElement);
+    @SuppressWarnings("unchecked")
+    private static <E> E get(Object[] elements, int index) {
+        return (E) elements[index];
+    }
+
+    private E getOrNull(int index) {
+        return from <= index && index < to ? get(index) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        int result = comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+        return descending ? -result : result;
+    }
+
+    // Chars following the prefix common to all strings, packed four per long, so that
+    // unsigned order of different packs agrees with order of strings.
+    private static class Prefixes {
+        final String first;
+        final int offset;
+        final long[] packs;
+
+        Prefixes(String first, int offset, long[] packs) {
+            this.first = first;
+            this.offset = offset;
+            this.packs = packs;
+        }
 
-        if (inclusive) {
-            to++;
+        static long pack(String s, int offset) {
+            long pack = 0;
+            for (int i = offset; i < offset + 4; i++) {
+                pack = pack << 16 | (i < s.length() ? s.charAt(i) : 0);
+            }
+            return pack;
         }
+    }
+
+    private static Prefixes prefixes(Object[] elements, Comparator<?> comparator) {
+        if (elements.length == 0 || comparator != null && comparator != Comparator.naturalOrder()) {
+            return null;
+        }
+        for (Object element : elements) {
+            if (!(element instanceof String)) {
+                return null;
+            }
+        }
+        // Elements are sorted, so the first and the last ones share the least prefix.
+        String first = (String) elements[0];
+        String last = (String) elements[elements.length - 1];
+        int offset = 0;
+        while (offset < Math.min(first.length(), last.length()) && first.charAt(offset) == last.charAt(offset)) {
+            offset++;
+        }
+        long[] packs = new long[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            packs[i] = Prefixes.pack((String) elements[i], offset);
+        }
+        return new Prefixes(first, offset, packs);
+    }
 
-        if (from > to) {
-            throw new IllegalArgumentException("Start index is greater than end index");
+    // Compares strings only when their packs are equal, sparing most loads of string objects.
+    private int searchString(String key) {
+        if (!key.regionMatches(0, prefixes.first, 0, prefixes.offset)) {
+            // Key differs from all strings in their common prefix, so it is on one side of them.
+            return key.compareTo(prefixes.first) < 0 ? -(from + 1) : -(to + 1);
+        }
+        long pack = Prefixes.pack(key, prefixes.offset);
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compareUnsigned(prefixes.packs[mid], pack);
+            if (cmp == 0) {
+                cmp = ((String) elements[mid]).compareTo(key);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
         }
-        return new ArraySet<>(elements.subList(from, to), comparator);
+        return -(low + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(E element) {
+        if (prefixes != null && element instanceof String) {
+            return searchString((String) element);
+        }
+        return Arrays.binarySearch(elements, from, to, element, (Comparator<Object>) comparator);
+    }
+
+    // Index of the last element less than (or equal to) the given one in ascending order, from - 1 if none.
+    private int lowerIndex(E element, boolean inclusive) {
+        int index = search(element);
+        if (index < 0) {
+            return -index - 2;
+        }
+        return inclusive ? index : index - 1;
+    }
+
+    // Index of the first element greater than (or equal to) the given one in ascending order, to if none.
+    private int higherIndex(E element, boolean inclusive) {
+        int index = search(element);
+        if (index < 0) {
+            return -index - 1;
+        }
+        return inclusive ? index : index + 1;
+    }
+
+    private ArraySet<E> view(int from, int to) {
+        return new ArraySet<>(elements, from, Math.max(from, to), comparator, descending, prefixes);
     }
 
     @Override
-    @SuppressWarnings("unchecked cast")
-    public SortedSet<E> subSet(E fromElement, E toElement) {
-        if (((comparator == null) ? ((Comparable<E>)fromElement).compareTo(toElement) : comparator.compare(fromElement, toElement)) > 0) {
-            throw new IllegalArgumentException("From element is less than to element");
+    public E lower(E e) {
+        return getOrNull(descending ? higherIndex(e, false) : lowerIndex(e, false));
+    }
+
+    @Override
+    public E floor(E e) {
+        return getOrNull(descending ? higherIndex(e, true) : lowerIndex(e, true));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return getOrNull(descending ? lowerIndex(e, true) : higherIndex(e, true));
+    }
+
+    @Override
+    public E higher(E e) {
+        return getOrNull(descending ? lowerIndex(e, false) : higherIndex(e, false));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("ArraySet cannot be modified");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("ArraySet cannot be modified");
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new ArraySet<>(elements, from, to, comparator, !descending, prefixes);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ArrayIterator(!descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("From element is greater than to element");
         }
-        return subSet(fromElement, toElement, false);
+        if (descending) {
+            return view(higherIndex(toElement, toInclusive), lowerIndex(fromElement, fromInclusive) + 1);
+        }
+        return view(higherIndex(fromElement, fromInclusive), lowerIndex(toElement, toInclusive) + 1);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return descending
+                ? view(higherIndex(toElement, inclusive), to)
+                : view(from, lowerIndex(toElement, inclusive) + 1);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return descending
+                ? view(from, lowerIndex(fromElement, inclusive) + 1)
+                : view(higherIndex(fromElement, inclusive), to);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
     }
 
     @Override
     public SortedSet<E> headSet(E toElement) {
-        return isEmpty() ? new ArraySet<>(comparator) : subSet(first(), toElement, false);
+        return headSet(toElement, false);
     }
 
     @Override
     public SortedSet<E> tailSet(E fromElement) {
-        return isEmpty() ? new ArraySet<>(comparator) : subSet(fromElement, last(), true);
+        return tailSet(fromElement, true);
+    }
+
+    /** Returns number of elements of this set less than the given one. */
+    public int rank(E e) {
+        return descending ? to - 1 - lowerIndex(e, true) : higherIndex(e, true) - from;
+    }
+
+    /** Returns element with the given index in iteration order. */
+    public E select(int index) {
+        return at(Objects.checkIndex(index, size()));
+    }
+
+    /** Returns size of {@link #subSet(Object, boolean, Object, boolean)} with the same arguments without creating it. */
+    public int countInRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("From element is greater than to element");
+        }
+        int count = descending
+                ? lowerIndex(fromElement, fromInclusive) + 1 - higherIndex(toElement, toInclusive)
+                : lowerIndex(toElement, toInclusive) + 1 - higherIndex(fromElement, fromInclusive);
+        return Math.max(count, 0);
     }
 
     @Override
     public E first() {
         checkIsEmpty();
-        return elements.get(0);
+        return get(descending ? to - 1 : from);
     }
 
     @Override
     public E last() {
         checkIsEmpty();
-        return elements.get(elements.size() - 1);
+        return get(descending ? from : to - 1);
     }
 
     @Override
     public int size() {
-        return elements.size();
+        return to - from;
     }
 
     @Override
     public Iterator<E> iterator() {
-        return Collections.unmodifiableList(elements).iterator();
+        return new ArrayIterator(descending);
     }
 
     @Override
     @SuppressWarnings("unchecked cast")
     public boolean contains(Object o) {
-        return Collections.binarySearch(elements, (E) Objects.requireNonNull(o), comparator) >= 0;
+        return search((E) Objects.requireNonNull(o)) >= 0;
+    }
+
+    // Intersection gallops through the larger set when it is at least this many times larger.
+    private static final int GALLOP_RATIO = 16;
+
+    // Index-th element in iteration order of this view.
+    private E at(int index) {
+        return get(descending ? to - 1 - index : from + index);
+    }
+
+    // Index of the first element not less than key in iteration order, starting from start.
+    private int gallop(E key, int start) {
+        int low = start;
+        int high = start;
+        int step = 1;
+        while (high < size() && compare(at(high), key) < 0) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size());
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(at(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void checkOrder(ArraySet<E> other) {
+        if (!Objects.equals(comparator(), other.comparator())) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+    }
+
+    private ArraySet<E> result(Object[] result, int size) {
+        return new ArraySet<>(size == result.length ? result : Arrays.copyOf(result, size), comparator());
+    }
+
+    // Linear merge keeping elements only in this set, in both sets and only in other set as requested.
+    // Of two equal elements the one from this set is kept.
+    private ArraySet<E> merge(ArraySet<E> other, boolean onlyThis, boolean both, boolean onlyOther) {
+        checkOrder(other);
+        Object[] result = new Object[(onlyThis || both ? size() : 0) + (onlyOther ? other.size() : 0)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size() && j < other.size()) {
+            int cmp = compare(at(i), other.at(j));
+            if (cmp < 0) {
+                if (onlyThis) {
+                    result[size++] = at(i);
+                }
+                i++;
+            } else if (cmp > 0) {
+                if (onlyOther) {
+                    result[size++] = other.at(j);
+                }
+                j++;
+            } else {
+                if (both) {
+                    result[size++] = at(i);
+                }
+                i++;
+                j++;
+            }
+        }
+        for (; onlyThis && i < size(); i++) {
+            result[size++] = at(i);
+        }
+        for (; onlyOther && j < other.size(); j++) {
+            result[size++] = other.at(j);
+        }
+        return result(result, size);
+    }
+
+    // New set with delta applied in one merge. Delta is sorted in iteration order of this set,
+    // its elements marked as removed are contained in this set, the others are not.
+    ArraySet<E> applyDelta(Object[] delta, boolean[] removed) {
+        int added = 0;
+        for (boolean r : removed) {
+            added += r ? -1 : 1;
+        }
+        Object[] result = new Object[size() + added];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < size(); i++) {
+            E element = at(i);
+            for (; j < delta.length && compare(get(delta, j), element) < 0; j++) {
+                result[size++] = delta[j];
+            }
+            if (j < delta.length && removed[j] && compare(get(delta, j), element) == 0) {
+                j++;
+            } else {
+                result[size++] = element;
+            }
+        }
+        for (; j < delta.length; j++) {
+            result[size++] = delta[j];
+        }
+        return result(result, size);
+    }
+
+    /** Returns set of elements contained in this or other set. */
+    public ArraySet<E> union(ArraySet<E> other) {
+        return merge(other, true, true, true);
+    }
+
+    /** Returns set of elements contained in both sets, galloping through the larger one if sizes differ a lot. */
+    public ArraySet<E> intersection(ArraySet<E> other) {
+        if (other.size() < size() / GALLOP_RATIO || size() < other.size() / GALLOP_RATIO) {
+            checkOrder(other);
+            boolean thisSmaller = size() < other.size();
+            ArraySet<E> small = thisSmaller ? this : other;
+            ArraySet<E> large = thisSmaller ? other : this;
+            Object[] result = new Object[small.size()];
+            int size = 0;
+            int position = 0;
+            for (int i = 0; i < small.size() && position < large.size(); i++) {
+                E key = small.at(i);
+                position = large.gallop(key, position);
+                if (position < large.size() && compare(large.at(position), key) == 0) {
+                    result[size++] = thisSmaller ? key : large.at(position);
+                    position++;
+                }
+            }
+            return result(result, size);
+        }
+        return merge(other, false, true, false);
+    }
+
+    /** Returns set of elements contained in this set but not in other one. */
+    public ArraySet<E> difference(ArraySet<E> other) {
+        return merge(other, true, false, false);
+    }
+
+    /** Returns set of elements contained in exactly one of the sets. */
+    public ArraySet<E> symmetricDifference(ArraySet<E> other) {
+        return merge(other, true, false, true);
+    }
+
+    private class ArrayIterator implements Iterator<E> {
+        private final boolean reversed;
+        private int next;
+
+        ArrayIterator(boolean reversed) {
+            this.reversed = reversed;
+            this.next = reversed ? to - 1 : from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return reversed ? next >= from : next < to;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E result = get(next);
+            next += reversed ? -1 : 1;
+            return result;
+        }
     }
 }
@@ -0,0 +1,259 @@
+package ru.ifmo.badikova.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Binary format of sorted sets, loaded in order without sorting.
+ * <p>
+ * Header: magic, kind, element count. Integers are split into blocks of {@value #BLOCK}:
+ * an index of {@code (first value, data offset)} per block followed by varint deltas of the
+ * other values, so an encoded set can be searched in a {@link ByteBuffer} or a mapped file
+ * without being decoded. Strings are stored as varint length of the prefix shared with the
+ * previous string, varint length of the rest and its chars in one to three bytes each,
+ * as in modified UTF-8, so that any string, including one with unpaired surrogates, is kept.
+ */
+public final class ArraySetFormat {
+    private static final int MAGIC = 0x41534554;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte STRING = 3;
+    private static final int BLOCK = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ArraySetFormat() {
+    }
+
+    public static void write(IntArraySet set, OutputStream out) throws IOException {
+        writeNumbers(out, INT, Integer.BYTES, set.size(), set::get);
+    }
+
+    public static void write(LongArraySet set, OutputStream out) throws IOException {
+        writeNumbers(out, LONG, Long.BYTES, set.size(), set::get);
+    }
+
+    /** @throws IllegalArgumentException if the decoded values are not strictly ascending */
+    public static IntArraySet readIntSet(ByteBuffer in) {
+        int[] values = new int[checkHeader(in, INT)];
+        decode(in, Integer.BYTES, values.length, (i, value) -> values[i] = (int) value);
+        checkAscending(values.length, i -> values[i]);
+        return IntArraySet.ofSorted(values);
+    }
+
+    /** @throws IllegalArgumentException if the decoded values are not strictly ascending */
+    public static LongArraySet readLongSet(ByteBuffer in) {
+        long[] values = new long[checkHeader(in, LONG)];
+        decode(in, Long.BYTES, values.length, (i, value) -> values[i] = value);
+        checkAscending(values.length, i -> values[i]);
+        return LongArraySet.ofSorted(values);
+    }
+
+    /** Searches encoded int set, reading only the block index and one block. */
+    public static boolean containsInt(ByteBuffer in, int value) {
+        return contains(in, INT, Integer.BYTES, value);
+    }
+
+    /** Searches encoded long set, reading only the block index and one block. */
+    public static boolean containsLong(ByteBuffer in, long value) {
+        return contains(in, LONG, Long.BYTES, value);
+    }
+
+    public static void write(ArraySet<String> set, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.writeInt(MAGIC);
+        data.writeByte(STRING);
+        data.writeInt(set.size());
+        String previous = "";
+        for (String element : set) {
+            int shared = 0;
+            int limit = Math.min(previous.length(), element.length());
+            while (shared < limit && previous.charAt(shared) == element.charAt(shared)) {
+                shared++;
+            }
+            writeVarint(data, shared);
+            writeVarint(data, element.length() - shared);
+            for (int i = shared; i < element.length(); i++) {
+                writeChar(data, element.charAt(i));
+            }
+            previous = element;
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads strings written from a set ordered by the given comparator, {@code null} for natural order.
+     *
+     * @throws IllegalArgumentException if the strings are not ordered by the comparator
+     */
+    public static ArraySet<String> readStringSet(ByteBuffer in, Comparator<? super String> comparator) {
+        Object[] elements = new Object[checkHeader(in, STRING)];
+        char[] chars = new char[0];
+        for (int i = 0; i < elements.length; i++) {
+            int shared = (int) readVarint(in);
+            int length = shared + (int) readVarint(in);
+            if (length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(length, 2 * chars.length));
+            }
+            for (int j = shared; j < length; j++) {
+                chars[j] = readChar(in);
+            }
+            elements[i] = new String(chars, 0, length);
+        }
+        return ArraySet.ofCheckedSorted(elements, comparator);
+    }
+
+    // Corrupted deltas may wrap around, such values would break searches of the set.
+    private static void checkAscending(int count, IntToLongFunction values) {
+        for (int i = 1; i < count; i++) {
+            if (values.applyAsLong(i - 1) >= values.applyAsLong(i)) {
+                throw new IllegalArgumentException("Values are not sorted and distinct at index " + i);
+            }
+        }
+    }
+
+    private static int checkHeader(ByteBuffer in, byte kind) {
+        if (in.getInt() != MAGIC || in.get() != kind) {
+            throw new IllegalArgumentException("Not an encoded set of the requested kind");
+        }
+        return in.getInt();
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void writeChar(DataOutputStream out, char c) throws IOException {
+        if (c < 0x80) {
+            out.writeByte(c);
+        } else if (c < 0x800) {
+            out.writeByte(0xC0 | c >> 6);
+            out.writeByte(0x80 | c & 0x3F);
+        } else {
+            out.writeByte(0xE0 | c >> 12);
+            out.writeByte(0x80 | c >> 6 & 0x3F);
+            out.writeByte(0x80 | c & 0x3F);
+        }
+    }
+
+    private static char readChar(ByteBuffer in) {
+        int b = in.get() & 0xFF;
+        if (b < 0x80) {
+            return (char) b;
+        } else if (b < 0xE0) {
+            return (char) ((b & 0x1F) << 6 | in.get() & 0x3F);
+        }
+        return (char) ((b & 0x0F) << 12 | (in.get() & 0x3F) << 6 | in.get() & 0x3F);
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    private static void writeNumber(DataOutputStream out, int width, long value) throws IOException {
+        if (width == Integer.BYTES) {
+            out.writeInt((int) value);
+        } else {
+            out.writeLong(value);
+        }
+    }
+
+    private static long readNumber(ByteBuffer in, int width, int position) {
+        return width == Integer.BYTES ? in.getInt(position) : in.getLong(position);
+    }
+
+    // Deltas of ascending values are written unsigned, a delta of longs may not fit into signed long.
+    private static void writeNumbers(OutputStream stream, byte kind, int width, int count, IntToLongFunction values) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeByte(kind);
+        out.writeInt(count);
+        int blocks = (count + BLOCK - 1) / BLOCK;
+        out.writeInt(blocks);
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % BLOCK == 0) {
+                writeNumber(out, width, values.applyAsLong(i));
+                out.writeInt(offset);
+            } else {
+                offset += varintLength(values.applyAsLong(i) - values.applyAsLong(i - 1));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (i % BLOCK != 0) {
+                writeVarint(out, values.applyAsLong(i) - values.applyAsLong(i - 1));
+            }
+        }
+        out.flush();
+    }
+
+    private interface NumberConsumer {
+        void accept(int index, long value);
+    }
+
+    private static void decode(ByteBuffer in, int width, int count, NumberConsumer consumer) {
+        int base = in.position();
+        int blocks = in.getInt();
+        int entry = width + Integer.BYTES;
+        in.position(base + Integer.BYTES + blocks * entry);
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = i % BLOCK == 0
+                    ? readNumber(in, width, base + Integer.BYTES + i / BLOCK * entry)
+                    : value + readVarint(in);
+            consumer.accept(i, value);
+        }
+    }
+
+    private static boolean contains(ByteBuffer encoded, byte kind, int width, long value) {
+        ByteBuffer in = encoded.duplicate();
+        int count = checkHeader(in, kind);
+        int index = in.position() + Integer.BYTES;
+        int blocks = in.getInt();
+        int entry = width + Integer.BYTES;
+        // Last block starting with a value not greater than the given one.
+        int low = 0;
+        int high = blocks - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (readNumber(in, width, index + mid * entry) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return false;
+        }
+        long current = readNumber(in, width, index + high * entry);
+        in.position(index + blocks * entry + in.getInt(index + high * entry + width));
+        for (int i = high * BLOCK + 1; current < value && i < Math.min(count, (high + 1) * BLOCK); i++) {
+            current += readVarint(in);
+        }
+        return current == value;
+    }
+}
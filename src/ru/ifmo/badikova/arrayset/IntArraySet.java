@@ -0,0 +1,337 @@
+package ru.ifmo.badikova.arrayset;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable sorted set of {@code int} values backed by a sorted {@code int[]}, {@code 4} bytes per element.
+ * Views are windows over the same array. Use {@link #boxed()} where a {@code SortedSet<Integer>} is expected.
+ * <p>
+ * Specialization of {@link LongArraySet}, every change must be made to both: a shared generic or
+ * accessor-based search would box values or add a call per probe on the paths the index speeds up.
+ */
+public class IntArraySet {
+    private static final int[] EMPTY = new int[0];
+    // Keys per node of the search index, a cache line of values.
+    private static final int BLOCK = 64 / 4;
+
+    private final int[] values;
+    private final int from;
+    private final int to;
+    // Optional search index shared by views, top level first. Each level holds the first key
+    // of every block of the level below it, the last level indexes blocks of values.
+    private final int[][] index;
+
+    public IntArraySet(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        this.values = dedupe(sorted);
+        this.from = 0;
+        this.to = this.values.length;
+        this.index = null;
+    }
+
+    public IntArraySet(Collection<? extends Integer> values) {
+        this(values.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public IntArraySet() {
+        this(EMPTY, 0, 0, null);
+    }
+
+    private IntArraySet(int[] values, int from, int to, int[][] index) {
+        this.values = values;
+        this.from = from;
+        this.to = to;
+        this.index = index;
+    }
+
+    // Takes sorted distinct values without copying them.
+    static IntArraySet ofSorted(int[] values) {
+        return new IntArraySet(values, 0, values.length, null);
+    }
+
+    private static int[] dedupe(int[] sorted) {
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Returns this set with a B-tree-like index of its array for lookups touching one cache line per level
+     * instead of one per probe of binary search. The index takes about 1/16 of the array.
+     */
+    public IntArraySet withSearchIndex() {
+        if (index != null) {
+            return this;
+        }
+        List<int[]> levels = new ArrayList<>();
+        for (int[] level = values; level.length > BLOCK; level = levels.get(0)) {
+            int[] next = new int[(level.length + BLOCK - 1) / BLOCK];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = level[i * BLOCK];
+            }
+            levels.add(0, next);
+        }
+        return new IntArraySet(values, from, to, levels.toArray(new int[0][]));
+    }
+
+    // Number of keys less than (or equal to) the given one in the block of the level starting at start.
+    // Counts instead of breaking on the first greater key, so the loop does not branch on data.
+    private static int count(int[] level, int start, int value, boolean orEqual) {
+        int end = Math.min(start + BLOCK, level.length);
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            count += (orEqual ? level[i] <= value : level[i] < value) ? 1 : 0;
+        }
+        return count;
+    }
+
+    // Number of values less than (or equal to) the given one in the whole array, found through the index.
+    private int rank(int value, boolean orEqual) {
+        int block = 0;
+        for (int[] level : index) {
+            int start = block * BLOCK;
+            block = start + Math.max(count(level, start, value, orEqual) - 1, 0);
+        }
+        return block * BLOCK + count(values, block * BLOCK, value, orEqual);
+    }
+
+    private void checkIsEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    /** Returns the element with the given index in ascending order. */
+    public int get(int index) {
+        Objects.checkIndex(index, size());
+        return values[from + index];
+    }
+
+    public int first() {
+        checkIsEmpty();
+        return values[from];
+    }
+
+    public int last() {
+        checkIsEmpty();
+        return values[to - 1];
+    }
+
+    public boolean contains(int value) {
+        if (index != null) {
+            int i = rank(value, false);
+            return from <= i && i < to && values[i] == value;
+        }
+        return Arrays.binarySearch(values, from, to, value) >= 0;
+    }
+
+    // Absolute index of the last value less than (or equal to) the given one, from - 1 if none.
+    private int lowerBound(int value, boolean inclusive) {
+        if (index != null) {
+            return Math.max(from - 1, Math.min(to - 1, rank(value, inclusive) - 1));
+        }
+        int index = Arrays.binarySearch(values, from, to, value);
+        if (index < 0) {
+            return -index - 2;
+        }
+        return inclusive ? index : index - 1;
+    }
+
+    // Absolute index of the first value greater than (or equal to) the given one, to if none.
+    private int upperBound(int value, boolean inclusive) {
+        if (index != null) {
+            return Math.max(from, Math.min(to, rank(value, !inclusive)));
+        }
+        int index = Arrays.binarySearch(values, from, to, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        return inclusive ? index : index + 1;
+    }
+
+    private int indexOrAbsent(int index) {
+        return from <= index && index < to ? index - from : -1;
+    }
+
+    /** Index of the greatest value strictly less than the given one, {@code -1} if there is none. */
+    public int lowerIndex(int value) {
+        return indexOrAbsent(lowerBound(value, false));
+    }
+
+    /** Index of the greatest value less than or equal to the given one, {@code -1} if there is none. */
+    public int floorIndex(int value) {
+        return indexOrAbsent(lowerBound(value, true));
+    }
+
+    /** Index of the least value greater than or equal to the given one, {@code -1} if there is none. */
+    public int ceilingIndex(int value) {
+        return indexOrAbsent(upperBound(value, true));
+    }
+
+    /** Index of the least value strictly greater than the given one, {@code -1} if there is none. */
+    public int higherIndex(int value) {
+        return indexOrAbsent(upperBound(value, false));
+    }
+
+    private OptionalInt valueAt(int index) {
+        return index < 0 ? OptionalInt.empty() : OptionalInt.of(values[from + index]);
+    }
+
+    public OptionalInt lower(int value) {
+        return valueAt(lowerIndex(value));
+    }
+
+    public OptionalInt floor(int value) {
+        return valueAt(floorIndex(value));
+    }
+
+    public OptionalInt ceiling(int value) {
+        return valueAt(ceilingIndex(value));
+    }
+
+    public OptionalInt higher(int value) {
+        return valueAt(higherIndex(value));
+    }
+
+    private IntArraySet view(int from, int to) {
+        return new IntArraySet(values, from, Math.max(from, to), index);
+    }
+
+    public IntArraySet subSet(int fromValue, boolean fromInclusive, int toValue, boolean toInclusive) {
+        if (fromValue > toValue) {
+            throw new IllegalArgumentException("From value is greater than to value");
+        }
+        return view(upperBound(fromValue, fromInclusive), lowerBound(toValue, toInclusive) + 1);
+    }
+
+    public IntArraySet headSet(int toValue, boolean inclusive) {
+        return view(from, lowerBound(toValue, inclusive) + 1);
+    }
+
+    public IntArraySet tailSet(int fromValue, boolean inclusive) {
+        return view(upperBound(fromValue, inclusive), to);
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+        };
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(values, from, to);
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOfRange(values, from, to);
+    }
+
+    /** Returns {@code SortedSet} view of this set, sharing its array. */
+    public SortedSet<Integer> boxed() {
+        return new Boxed(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IntArraySet) {
+            IntArraySet that = (IntArraySet) obj;
+            return Arrays.equals(values, from, to, that.values, that.from, that.to);
+        }
+        return false;
+    }
+
+    /** Same as hash code of the equal {@code Set<Integer>}. */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Integer.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return boxed().toString();
+    }
+
+    private static class Boxed extends AbstractSet<Integer> implements SortedSet<Integer> {
+        private final IntArraySet set;
+
+        Boxed(IntArraySet set) {
+            this.set = set;
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+            return set.subSet(fromElement, true, toElement, false).boxed();
+        }
+
+        @Override
+        public SortedSet<Integer> headSet(Integer toElement) {
+            return set.headSet(toElement, false).boxed();
+        }
+
+        @Override
+        public SortedSet<Integer> tailSet(Integer fromElement) {
+            return set.tailSet(fromElement, true).boxed();
+        }
+
+        @Override
+        public Integer first() {
+            return set.first();
+        }
+
+        @Override
+        public Integer last() {
+            return set.last();
+        }
+
+        @Override
+        public int size() {
+            return set.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return set.contains((Integer) Objects.requireNonNull(o));
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return set.iterator();
+        }
+    }
+}
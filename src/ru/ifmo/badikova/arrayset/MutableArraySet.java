@@ -0,0 +1,343 @@
+package ru.ifmo.badikova.arrayset;
+
+import java.util.*;
+
+/**
+ * Sorted set backed by an immutable {@link ArraySet} and a small sorted delta of added elements
+ * and tombstones of removed ones. The delta is merged into a new array once it grows beyond
+ * square root of the set size, so an update costs amortized {@code O(sqrt(n))}.
+ * <p>
+ * Writers are serialized, readers see a consistent state without locking. {@link #snapshot()}
+ * returns an immutable set that is not affected by later updates. Navigation methods search
+ * the main array and the delta without merging them.
+ */
+public class MutableArraySet<E> extends AbstractSet<E> {
+    private static final int MIN_DELTA = 64;
+    private static final Object[] EMPTY = new Object[0];
+    private static final boolean[] NONE = new boolean[0];
+
+    private final Comparator<? super E> comparator;
+    private volatile State<E> state;
+
+    private static class State<E> {
+        final ArraySet<E> main;
+        // Sorted, removed[i] is true for a tombstone of an element of main and false for an element absent from it.
+        final Object[] delta;
+        final boolean[] removed;
+        final int size;
+        // Merged lazily, racy publication is safe as ArraySet is immutable.
+        ArraySet<E> snapshot;
+
+        State(ArraySet<E> main, Object[] delta, boolean[] removed, int size) {
+            this.main = main;
+            this.delta = delta;
+            this.removed = removed;
+            this.size = size;
+            this.snapshot = delta.length == 0 ? main : null;
+        }
+    }
+
+    public MutableArraySet(Collection<? extends E> elements, Comparator<? super E> comparator) {
+        ArraySet<E> main = new ArraySet<>(elements, comparator);
+        this.comparator = comparator;
+        this.state = new State<>(main, EMPTY, NONE, main.size());
+    }
+
+    public MutableArraySet(Collection<? extends E> elements) {
+        this(elements, null);
+    }
+
+    public MutableArraySet(Comparator<? super E> comparator) {
+        this(List.of(), comparator);
+    }
+
+    public MutableArraySet() {
+        this(List.of(), null);
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int search(Object[] delta, Object element, Comparator<?> comparator) {
+        return Arrays.binarySearch(delta, Objects.requireNonNull(element), (Comparator<Object>) comparator);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        State<E> current = state;
+        int index = search(current.delta, o, comparator);
+        return index >= 0 ? !current.removed[index] : current.main.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : ((Comparator<Object>) comparator).compare(a, b);
+    }
+
+    // Nearest element in the direction starting from the given element of main and index in delta, skipping removed ones.
+    private E nearest(State<E> current, E main, int index, boolean ascending) {
+        int step = ascending ? 1 : -1;
+        while (main != null && search(current.delta, main, comparator) >= 0) {
+            main = ascending ? current.main.higher(main) : current.main.lower(main);
+        }
+        while (0 <= index && index < current.delta.length && current.removed[index]) {
+            index += step;
+        }
+        if (index < 0 || index >= current.delta.length) {
+            return main;
+        }
+        @SuppressWarnings("unchecked")
+        E added = (E) current.delta[index];
+        if (main == null) {
+            return added;
+        }
+        int order = compare(main, added);
+        return ascending == order < 0 ? main : added;
+    }
+
+    // Index of the first delta element greater than (or equal to) the given one.
+    private int higherIndex(State<E> current, E e, boolean inclusive) {
+        int index = search(current.delta, e, comparator);
+        return index < 0 ? -index - 1 : inclusive ? index : index + 1;
+    }
+
+    public E first() {
+        return checkNotNull(edge(true));
+    }
+
+    public E last() {
+        return checkNotNull(edge(false));
+    }
+
+    private E edge(boolean ascending) {
+        State<E> current = state;
+        E main = current.main.isEmpty() ? null : ascending ? current.main.first() : current.main.last();
+        return nearest(current, main, ascending ? 0 : current.delta.length - 1, ascending);
+    }
+
+    private static <E> E checkNotNull(E element) {
+        if (element == null) {
+            throw new NoSuchElementException();
+        }
+        return element;
+    }
+
+    public E ceiling(E e) {
+        State<E> current = state;
+        return nearest(current, current.main.ceiling(e), higherIndex(current, e, true), true);
+    }
+
+    public E higher(E e) {
+        State<E> current = state;
+        return nearest(current, current.main.higher(e), higherIndex(current, e, false), true);
+    }
+
+    public E floor(E e) {
+        State<E> current = state;
+        return nearest(current, current.main.floor(e), higherIndex(current, e, false) - 1, false);
+    }
+
+    public E lower(E e) {
+        State<E> current = state;
+        return nearest(current, current.main.lower(e), higherIndex(current, e, true) - 1, false);
+    }
+
+    /** Returns immutable set of the current elements less than (or equal to) the given one, merging only that range. */
+    public ArraySet<E> headSet(E toElement, boolean inclusive) {
+        State<E> current = state;
+        int to = higherIndex(current, toElement, !inclusive);
+        return ((ArraySet<E>) current.main.headSet(toElement, inclusive))
+                .applyDelta(Arrays.copyOf(current.delta, to), Arrays.copyOf(current.removed, to));
+    }
+
+    /** Returns immutable set of the current elements greater than (or equal to) the given one, merging only that range. */
+    public ArraySet<E> tailSet(E fromElement, boolean inclusive) {
+        State<E> current = state;
+        int from = higherIndex(current, fromElement, inclusive);
+        int to = current.delta.length;
+        return ((ArraySet<E>) current.main.tailSet(fromElement, inclusive))
+                .applyDelta(Arrays.copyOfRange(current.delta, from, to), Arrays.copyOfRange(current.removed, from, to));
+    }
+
+    /** Returns immutable set of the current elements, merging the delta if it is not empty. */
+    public ArraySet<E> snapshot() {
+        State<E> current = state;
+        ArraySet<E> snapshot = current.snapshot;
+        if (snapshot == null) {
+            snapshot = current.snapshot = current.main.applyDelta(current.delta, current.removed);
+        }
+        return snapshot;
+    }
+
+    /** Merges the delta into the main array. */
+    public synchronized void flush() {
+        state = new State<>(snapshot(), EMPTY, NONE, state.size);
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        State<E> current = state;
+        int index = search(current.delta, e, comparator);
+        if (index >= 0) {
+            if (!current.removed[index]) {
+                return false;
+            }
+            update(current, remove(current.delta, index), remove(current.removed, index), current.size + 1);
+        } else if (current.main.contains(e)) {
+            return false;
+        } else {
+            index = -index - 1;
+            update(current, insert(current.delta, index, e), insert(current.removed, index, false), current.size + 1);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        State<E> current = state;
+        int index = search(current.delta, o, comparator);
+        if (index >= 0) {
+            if (current.removed[index]) {
+                return false;
+            }
+            update(current, remove(current.delta, index), remove(current.removed, index), current.size - 1);
+        } else if (!current.main.contains(o)) {
+            return false;
+        } else {
+            index = -index - 1;
+            update(current, insert(current.delta, index, o), insert(current.removed, index, true), current.size - 1);
+        }
+        return true;
+    }
+
+    /** Adds all elements, sorting them once and merging them into the delta in one pass. */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return update(c, true);
+    }
+
+    /** Removes all elements, sorting them once and merging them into the delta in one pass. */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return update(c, false);
+    }
+
+    // Merges the sorted batch into the delta: an element changing its presence back to that in main drops
+    // its delta entry, one absent from the delta gets an entry if main differs from the requested presence.
+    @SuppressWarnings("unchecked")
+    private synchronized boolean update(Collection<?> elements, boolean add) {
+        ArraySet<Object> batch = new ArraySet<>(elements, (Comparator<Object>) comparator);
+        State<E> current = state;
+        Object[] delta = new Object[current.delta.length + batch.size()];
+        boolean[] removed = new boolean[delta.length];
+        int size = current.size;
+        int n = 0;
+        int i = 0;
+        for (Object element : batch) {
+            for (; i < current.delta.length && compare(current.delta[i], element) < 0; i++) {
+                delta[n] = current.delta[i];
+                removed[n++] = current.removed[i];
+            }
+            if (i < current.delta.length && compare(current.delta[i], element) == 0) {
+                if (current.removed[i] == add) {
+                    size += add ? 1 : -1;
+                } else {
+                    delta[n] = current.delta[i];
+                    removed[n++] = current.removed[i];
+                }
+                i++;
+            } else if (current.main.contains(element) != add) {
+                delta[n] = element;
+                removed[n++] = !add;
+                size += add ? 1 : -1;
+            }
+        }
+        for (; i < current.delta.length; i++) {
+            delta[n] = current.delta[i];
+            removed[n++] = current.removed[i];
+        }
+        if (size == current.size) {
+            return false;
+        }
+        update(current, Arrays.copyOf(delta, n), Arrays.copyOf(removed, n), size);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        state = new State<>(new ArraySet<>(comparator), EMPTY, NONE, 0);
+    }
+
+    private void update(State<E> current, Object[] delta, boolean[] removed, int size) {
+        State<E> next = new State<>(current.main, delta, removed, size);
+        if (delta.length > Math.max(MIN_DELTA, (int) Math.sqrt(current.main.size()))) {
+            next = new State<>(current.main.applyDelta(delta, removed), EMPTY, NONE, size);
+        }
+        state = next;
+    }
+
+    private static Object[] insert(Object[] array, int index, Object element) {
+        Object[] result = new Object[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = element;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static boolean[] insert(boolean[] array, int index, boolean element) {
+        boolean[] result = new boolean[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = element;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Object[] remove(Object[] array, int index) {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static boolean[] remove(boolean[] array, int index) {
+        boolean[] result = new boolean[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    /** Iterates over a snapshot taken when the iterator is created, removal goes to this set. */
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> snapshot = snapshot().iterator();
+        return new Iterator<>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return last = snapshot.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                MutableArraySet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,365 @@
+package ru.ifmo.badikova.arrayset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted set of fixed-width binary keys kept off heap in direct or memory-mapped buffers.
+ * Keys are ordered as unsigned bytes, elements are {@link Key} flyweights over the buffers created on access.
+ * <p>
+ * File layout: magic, key length, key count, then the sorted distinct keys.
+ * {@link #open(Path)} maps a file without reading it. Mapped buffers are released by GC.
+ */
+public class OffHeapKeySet extends AbstractSet<OffHeapKeySet.Key> implements SortedSet<OffHeapKeySet.Key> {
+    private static final int MAGIC = 0x4b534554;
+    private static final int HEADER = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Segments are limited by int positions of ByteBuffer, each holds whole keys.
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int keyLength;
+    private final int keysPerSegment;
+    // Window of this view in keys.
+    private final long from;
+    private final long to;
+
+    private OffHeapKeySet(ByteBuffer[] segments, int keyLength, long from, long to) {
+        this.segments = segments;
+        this.keyLength = keyLength;
+        this.keysPerSegment = SEGMENT_SIZE / keyLength;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Maps key set file written by {@link #write(Path)} or {@link #write(Path, int, Iterator)}.
+     *
+     * @throws IllegalArgumentException if the key length in the file is not in {@code 1..2^30}
+     */
+    public static OffHeapKeySet open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // Read header fully.
+            }
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC) {
+                throw new IOException("Not a key set file: " + file);
+            }
+            int keyLength = checkKeyLength(header.getInt());
+            long count = header.getLong();
+            if (count < 0 || channel.size() != HEADER + count * keyLength) {
+                throw new IOException("Corrupted key set file: " + file);
+            }
+            long keysPerSegment = SEGMENT_SIZE / keyLength;
+            ByteBuffer[] segments = new ByteBuffer[(int) ((count + keysPerSegment - 1) / keysPerSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = i * keysPerSegment;
+                long keys = Math.min(keysPerSegment, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + first * keyLength, keys * keyLength);
+            }
+            return new OffHeapKeySet(segments, keyLength, 0, count);
+        }
+    }
+
+    /** Copies keys of the given length into direct buffers, sorting and removing duplicates. */
+    public static OffHeapKeySet copyOf(int keyLength, Collection<byte[]> keys) {
+        checkKeyLength(keyLength);
+        byte[][] sorted = keys.stream().map(key -> checkLength(key, keyLength)).sorted(Arrays::compareUnsigned).toArray(byte[][]::new);
+        int count = 0;
+        for (byte[] key : sorted) {
+            if (count == 0 || !Arrays.equals(sorted[count - 1], key)) {
+                sorted[count++] = key;
+            }
+        }
+        int keysPerSegment = SEGMENT_SIZE / keyLength;
+        ByteBuffer[] segments = new ByteBuffer[(count + keysPerSegment - 1) / keysPerSegment];
+        for (int i = 0; i < segments.length; i++) {
+            int first = i * keysPerSegment;
+            int last = Math.min(first + keysPerSegment, count);
+            segments[i] = ByteBuffer.allocateDirect((last - first) * keyLength);
+            for (int j = first; j < last; j++) {
+                segments[i].put(sorted[j]);
+            }
+            segments[i].flip();
+        }
+        return new OffHeapKeySet(segments, keyLength, 0, count);
+    }
+
+    // Every segment holds at least one key.
+    private static int checkKeyLength(int keyLength) {
+        if (keyLength <= 0 || keyLength > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Key length out of range 1.." + SEGMENT_SIZE + ": " + keyLength);
+        }
+        return keyLength;
+    }
+
+    private static byte[] checkLength(byte[] key, int keyLength) {
+        if (key.length != keyLength) {
+            throw new IllegalArgumentException("Key of length " + key.length + " instead of " + keyLength);
+        }
+        return key;
+    }
+
+    /**
+     * Writes key set file from keys given in strictly ascending order, so sets larger than heap can be built
+     * by streaming.
+     */
+    public static void write(Path file, int keyLength, Iterator<byte[]> sortedKeys) throws IOException {
+        checkKeyLength(keyLength);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(keyLength);
+            out.writeLong(0);
+            long count = 0;
+            byte[] previous = null;
+            while (sortedKeys.hasNext()) {
+                byte[] key = checkLength(sortedKeys.next(), keyLength);
+                if (previous != null && Arrays.compareUnsigned(previous, key) >= 0) {
+                    throw new IllegalArgumentException("Keys are not in strictly ascending order");
+                }
+                out.write(key);
+                previous = key;
+                count++;
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, count), HEADER - Long.BYTES);
+            channel.force(true);
+        }
+    }
+
+    /** Writes keys of this set to a key set file. */
+    public void write(Path file) throws IOException {
+        Iterator<Key> keys = iterator();
+        write(file, keyLength, new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                return keys.next().toByteArray();
+            }
+        });
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    private ByteBuffer segment(long index) {
+        return segments[(int) (index / keysPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % keysPerSegment) * keyLength;
+    }
+
+    private Key key(long index) {
+        return new Key(segment(index), offset(index), keyLength);
+    }
+
+    // Index of the key in the window, or -(insertion point) - 1 as in Arrays.binarySearch.
+    private long search(Key key) {
+        long low = from;
+        long high = to - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int cmp = Key.compare(segment(mid), offset(mid), keyLength, key.buffer, key.offset, key.length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Index of the first key not less than the given one, to if none.
+    private long lowerBound(Key key) {
+        long index = search(key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private OffHeapKeySet view(long from, long to) {
+        return new OffHeapKeySet(segments, keyLength, from, Math.max(from, to));
+    }
+
+    private void checkIsEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /** Number of keys, which may exceed {@link Integer#MAX_VALUE}. */
+    public long longSize() {
+        return to - from;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Key && search((Key) o) >= 0;
+    }
+
+    public boolean contains(byte[] key) {
+        return search(Key.of(key)) >= 0;
+    }
+
+    @Override
+    public Comparator<? super Key> comparator() {
+        return null;
+    }
+
+    @Override
+    public OffHeapKeySet subSet(Key fromElement, Key toElement) {
+        if (fromElement.compareTo(toElement) > 0) {
+            throw new IllegalArgumentException("From element is greater than to element");
+        }
+        return view(lowerBound(fromElement), lowerBound(toElement));
+    }
+
+    @Override
+    public OffHeapKeySet headSet(Key toElement) {
+        return view(from, lowerBound(toElement));
+    }
+
+    @Override
+    public OffHeapKeySet tailSet(Key fromElement) {
+        return view(lowerBound(fromElement), to);
+    }
+
+    @Override
+    public Key first() {
+        checkIsEmpty();
+        return key(from);
+    }
+
+    @Override
+    public Key last() {
+        checkIsEmpty();
+        return key(to - 1);
+    }
+
+    @Override
+    public Iterator<Key> iterator() {
+        return new Iterator<>() {
+            private long next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Key next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return key(next++);
+            }
+        };
+    }
+
+    /** Read-only view of a key, valid as long as the set it came from is reachable. */
+    public static final class Key implements Comparable<Key> {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        private Key(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /** Wraps bytes of a key without copying them. */
+        public static Key of(byte[] bytes) {
+            return new Key(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte get(int index) {
+            Objects.checkIndex(index, length);
+            return buffer.get(offset + index);
+        }
+
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return bytes;
+        }
+
+        // Unsigned lexicographic order, eight big-endian bytes at a time.
+        private static int compare(ByteBuffer a, int aOffset, int aLength, ByteBuffer b, int bOffset, int bLength) {
+            int length = Math.min(aLength, bLength);
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                int cmp = Long.compareUnsigned(a.getLong(aOffset + i), b.getLong(bOffset + i));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            for (; i < length; i++) {
+                int cmp = Byte.compareUnsigned(a.get(aOffset + i), b.get(bOffset + i));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(aLength, bLength);
+        }
+
+        @Override
+        public int compareTo(Key that) {
+            return compare(buffer, offset, length, that.buffer, that.offset, that.length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && compareTo((Key) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer.get(offset + i);
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                result.append(String.format("%02x", buffer.get(offset + i)));
+            }
+            return result.toString();
+        }
+    }
+}
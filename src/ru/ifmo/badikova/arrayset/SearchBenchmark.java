@@ -0,0 +1,65 @@
+package ru.ifmo.badikova.arrayset;
+
+import java.util.*;
+
+/**
+ * Lookup latency of {@link IntArraySet} with and without its search index and of {@link ArraySet} of boxed values.
+ * <p>
+ * Usage: {@code SearchBenchmark [<size>...]}, sizes default to 1K to 100M by powers of ten.
+ * Boxed sets are measured up to {@value #MAX_BOXED} elements, larger ones do not fit a default heap.
+ */
+public class SearchBenchmark {
+    private static final int MAX_BOXED = 10_000_000;
+    private static final int LOOKUPS = 1 << 22;
+    private static final int ROUNDS = 5;
+
+    private interface Lookup {
+        boolean contains(int value);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+        Random random = new Random(0);
+        System.out.printf("%12s %12s %12s %12s%n", "size", "binary ns", "indexed ns", "boxed ns");
+        for (int size : sizes) {
+            // Even values, so that about half of the lookups miss.
+            int[] values = new int[size];
+            Arrays.setAll(values, i -> 2 * i);
+            int[] queries = random.ints(LOOKUPS, 0, 2 * size).toArray();
+
+            IntArraySet plain = IntArraySet.ofSorted(values);
+            IntArraySet indexed = plain.withSearchIndex();
+            double binary = measure(queries, plain::contains);
+            double index = measure(queries, indexed::contains);
+            double boxed = Double.NaN;
+            if (size <= MAX_BOXED) {
+                Object[] elements = Arrays.stream(values).boxed().toArray();
+                ArraySet<Integer> set = ArraySet.ofSorted(elements, null);
+                boxed = measure(queries, set::contains);
+            }
+            System.out.printf("%12d %12.1f %12.1f %12.1f%n", size, binary, index, boxed);
+        }
+    }
+
+    // Best of ROUNDS runs after a warm-up one, in nanoseconds per lookup.
+    private static double measure(int[] queries, Lookup lookup) {
+        long best = Long.MAX_VALUE;
+        int found = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int query : queries) {
+                found += lookup.contains(query) ? 1 : 0;
+            }
+            long time = System.nanoTime() - start;
+            if (round > 0) {
+                best = Math.min(best, time);
+            }
+        }
+        if (found < 0) {
+            throw new AssertionError();
+        }
+        return (double) best / queries.length;
+    }
+}
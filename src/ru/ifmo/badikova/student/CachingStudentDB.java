@@ -0,0 +1,194 @@
+package ru.ifmo.badikova.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Caches results of group queries of the delegate in an LRU map keyed by query and roster identity.
+ * Rosters are referenced weakly, entries of collected ones are dropped.
+ * Results of an {@link IndexedStudentDB} are also keyed by its {@link IndexedStudentDB#getVersion() version},
+ * so they are not reused after the store is modified. A roster modified in place must be
+ * {@link #invalidate(Collection) invalidated}.
+ * <p>
+ * Caching the roster of an {@link IndexedStudentDB} copies it in {@code O(n)} after every modification,
+ * its queries without a collection answer from the indexes and need no cache.
+ */
+public class CachingStudentDB implements StudentGroupQuery {
+    private final StudentGroupQuery delegate;
+    private final Map<Key, Object> cache;
+    private final ReferenceQueue<Collection<Student>> collected = new ReferenceQueue<>();
+    // Incremented by invalidation, so that results computed before it are not stored.
+    private long generation;
+
+    private static class Key extends WeakReference<Collection<Student>> {
+        final String query;
+        final long version;
+        final int hash;
+
+        Key(String query, Collection<Student> students, long version, ReferenceQueue<Collection<Student>> queue) {
+            super(students, queue);
+            this.query = query;
+            this.version = version;
+            this.hash = 31 * (31 * query.hashCode() + System.identityHashCode(students)) + Long.hashCode(version);
+        }
+
+        // Keys of collected rosters are equal only to themselves, so that they can be removed.
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key that = (Key) obj;
+                Collection<Student> students = get();
+                return hash == that.hash && query.equals(that.query) && version == that.version
+                        && students != null && students == that.get();
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public CachingStudentDB(StudentGroupQuery delegate, int capacity) {
+        this.delegate = delegate;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private long version() {
+        return delegate instanceof IndexedStudentDB ? ((IndexedStudentDB) delegate).getVersion() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String query, Collection<Student> students, Supplier<T> compute) {
+        Key key = new Key(query, students, version(), collected);
+        long current;
+        synchronized (cache) {
+            for (Reference<?> reference; (reference = collected.poll()) != null; ) {
+                cache.remove(reference);
+            }
+            Object result = cache.get(key);
+            if (result != null) {
+                return (T) result;
+            }
+            current = generation;
+        }
+        T result = compute.get();
+        synchronized (cache) {
+            if (current == generation) {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /** Drops cached results for the roster, to be called after it is modified. */
+    public void invalidate(Collection<Student> students) {
+        synchronized (cache) {
+            generation++;
+            cache.keySet().removeIf(key -> key.get() == students);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> students) {
+        return cached("getGroupsByName", students, () -> List.copyOf(delegate.getGroupsByName(students)));
+    }
+
+    @Override
+    public List<Group> getGroupsById(Collection<Student> students) {
+        return cached("getGroupsById", students, () -> List.copyOf(delegate.getGroupsById(students)));
+    }
+
+    @Override
+    public String getLargestGroup(Collection<Student> students) {
+        return cached("getLargestGroup", students, () -> delegate.getLargestGroup(students));
+    }
+
+    @Override
+    public String getLargestGroupFirstName(Collection<Student> students) {
+        return cached("getLargestGroupFirstName", students, () -> delegate.getLargestGroupFirstName(students));
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return delegate.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return delegate.getLastNames(students);
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> students) {
+        return delegate.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        return delegate.getFullNames(students);
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        return delegate.getDistinctFirstNames(students);
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> students) {
+        return delegate.getMinStudentFirstName(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return delegate.sortStudentsById(students);
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return delegate.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return delegate.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return delegate.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return delegate.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        return delegate.findStudentNamesByGroup(students, group);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.ifmo.badikova.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentQuery;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Queries running over columns of a {@link StudentTable}: filters compare dictionary codes and sorting
+ * compares ranks of codes, {@link Student} objects are created only for the returned students.
+ * Other collections are delegated to {@link StudentDB}.
+ */
+public class ColumnarStudentDB implements StudentQuery {
+    private final StudentDB fallback = new StudentDB();
+
+    private static IntStream indices(StudentTable table) {
+        return IntStream.range(0, table.size());
+    }
+
+    private static List<String> getStrings(StudentTable table, IntUnaryOperator column) {
+        return indices(table).mapToObj(i -> table.string(column.applyAsInt(i))).collect(Collectors.toList());
+    }
+
+    private static Comparator<Integer> byName(StudentTable table) {
+        int[] ranks = table.ranks();
+        return Comparator.<Integer>comparingInt(i -> ranks[table.getLastName(i)])
+                .thenComparingInt(i -> ranks[table.getFirstName(i)])
+                .thenComparingInt(table::getId);
+    }
+
+    private static List<Student> materialize(StudentTable table, IntStream indices, Comparator<Integer> order) {
+        return indices.boxed().sorted(order).map(table::get).collect(Collectors.toList());
+    }
+
+    // Students having the given string in the column, ordered by name.
+    private static List<Student> find(StudentTable table, IntUnaryOperator column, String value) {
+        int code = table.code(value);
+        return materialize(table, indices(table).filter(i -> column.applyAsInt(i) == code), byName(table));
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return students instanceof StudentTable
+                ? getStrings((StudentTable) students, ((StudentTable) students)::getFirstName)
+                : fallback.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return students instanceof StudentTable
+                ? getStrings((StudentTable) students, ((StudentTable) students)::getLastName)
+                : fallback.getLastNames(students);
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> students) {
+        return students instanceof StudentTable
+                ? getStrings((StudentTable) students, ((StudentTable) students)::getGroup)
+                : fallback.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.getFullNames(students);
+        }
+        StudentTable table = (StudentTable) students;
+        return indices(table)
+                .mapToObj(i -> table.string(table.getFirstName(i)) + " " + table.string(table.getLastName(i)))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.getDistinctFirstNames(students);
+        }
+        StudentTable table = (StudentTable) students;
+        return indices(table).map(table::getFirstName).distinct()
+                .mapToObj(table::string)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> students) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.getMinStudentFirstName(students);
+        }
+        StudentTable table = (StudentTable) students;
+        return indices(table).boxed()
+                .min(Comparator.comparingInt(table::getId))
+                .map(i -> table.string(table.getFirstName(i)))
+                .orElse("");
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.sortStudentsById(students);
+        }
+        StudentTable table = (StudentTable) students;
+        return materialize(table, indices(table), Comparator.comparingInt(table::getId));
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.sortStudentsByName(students);
+        }
+        StudentTable table = (StudentTable) students;
+        return materialize(table, indices(table), byName(table));
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return students instanceof StudentTable
+                ? find((StudentTable) students, ((StudentTable) students)::getFirstName, name)
+                : fallback.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return students instanceof StudentTable
+                ? find((StudentTable) students, ((StudentTable) students)::getLastName, name)
+                : fallback.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return students instanceof StudentTable
+                ? find((StudentTable) students, ((StudentTable) students)::getGroup, group)
+                : fallback.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        if (!(students instanceof StudentTable)) {
+            return fallback.findStudentNamesByGroup(students, group);
+        }
+        StudentTable table = (StudentTable) students;
+        int code = table.code(group);
+        int[] ranks = table.ranks();
+        // Last name code to the first name code of the least rank.
+        Map<Integer, Integer> names = new HashMap<>();
+        indices(table).filter(i -> table.getGroup(i) == code).forEach(i -> names.merge(
+                table.getLastName(i), table.getFirstName(i), (a, b) -> ranks[a] <= ranks[b] ? a : b));
+        Map<String, String> result = new HashMap<>();
+        names.forEach((lastName, firstName) -> result.put(table.string(lastName), table.string(firstName)));
+        return result;
+    }
+}
@@ -12,79 +12,78 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class HardStudentDB implements StudentGroupQuery {
     private final Comparator<Student> studentComparatorByName = Comparator
             .comparing(Student::getLastName)
             .thenComparing(Student::getFirstName)
             .thenComparing(Student::getId);
+    private final ParallelStreams streams;
+
+    /** Creates instance processing collections of at least {@code parallelThreshold} students in parallel. */
+    public HardStudentDB(int parallelThreshold) {
+        this.streams = new ParallelStreams(parallelThreshold);
+    }
+
+    public HardStudentDB() {
+        this(ParallelStreams.SEQUENTIAL);
+    }
 
     private Group makeGroup(String name, List<Student> students) {
         return new Group(name, students);
     }
 
-    private Stream<Group> groupStream (Collection<Student> students, Comparator<Student> comparator) {
-        return students.stream()
+    // Sorts once, a stable grouping into a TreeMap keeps the order within groups and orders groups by name.
+    private List<Group> groupBy(Collection<Student> students, Comparator<Student> comparator) {
+        return streams.of(students)
                 .sorted(comparator)
-                .collect(Collectors.groupingBy(Student::getGroup, HashMap::new, Collectors.toList()))
+                .collect(Collectors.groupingBy(Student::getGroup, TreeMap::new, Collectors.toList()))
                 .entrySet().stream()
-                .map(entry -> makeGroup(entry.getKey(), entry.getValue()));
-    }
-
-    private Stream<Group> groupStreamSort (Collection<Student> students, Comparator<Student> comparator) {
-        return groupStream(students.stream().sorted(comparator).collect(Collectors.toList()), comparator);
+                .map(entry -> makeGroup(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
     }
 
     private <C, T extends Collection<C>> T mapAndCollect(Collection<Student> students, Function<Student, C> mapper, Supplier<T> supplier) {
-        return students.stream().map(mapper).collect(Collectors.toCollection(supplier));
+        return streams.of(students).map(mapper).collect(Collectors.toCollection(supplier));
     }
 
     private List<String> getName(List<Student> students, Function<Student, String> f) {
         return mapAndCollect(students, f, ArrayList::new);
     }
 
-    private List<Group> sortAndCollectToListGroup(Stream<Group> stream, Comparator<Group> comparator) {
-        return stream.sorted(comparator).collect(Collectors.toList());
-    }
-
     @Override
     public List<Group> getGroupsByName(Collection<Student> students) {
-        return sortAndCollectToListGroup(groupStreamSort(students, studentComparatorByName), Comparator.comparing(Group::getName));
+        return groupBy(students, studentComparatorByName);
     }
 
     @Override
     public List<Group> getGroupsById(Collection<Student> students) {
-        return sortAndCollectToListGroup(groupStreamSort(students, Comparator.comparing(Student::getId)), Comparator.comparing(Group::getName));
-    }
-
-    private String getMinGroupName(Stream<Group> stream, Comparator<Group> comparator) {
-        return stream.min(comparator)
-                .orElse(makeGroup("", Collections.emptyList()))
-                .getName();
-    }
-
-    private int getGroupSize(Group group) {
-        return group.getStudents().size();
-    }
-
-    private int getDistinctGroupSize(Group group) {
-        return getDistinctFirstNames(group.getStudents()).size();
+        return groupBy(students, Comparator.comparing(Student::getId));
     }
 
-    private String getLargest(Collection<Student> students, Function<Group, Integer> f) {
-        return getMinGroupName(groupStream(students, Comparator.comparingInt(Student::getId)),
-                Comparator.comparing(f).reversed().thenComparing(Group::getName));
+    // Groups are counted without building their lists, the first of equally large ones in name order wins.
+    private <A> String getLargest(Collection<Student> students, Collector<Student, A, Integer> size) {
+        String largest = "";
+        int max = -1;
+        for (Map.Entry<String, Integer> entry : streams.of(students)
+                .collect(Collectors.groupingBy(Student::getGroup, TreeMap::new, size)).entrySet()) {
+            if (entry.getValue() > max) {
+                max = entry.getValue();
+                largest = entry.getKey();
+            }
+        }
+        return largest;
     }
 
     @Override
     public String getLargestGroup(Collection<Student> students) {
-        return getLargest(students, this::getGroupSize);
+        return getLargest(students, Collectors.summingInt(student -> 1));
     }
 
     @Override
     public String getLargestGroupFirstName(Collection<Student> students) {
-        return getLargest(students, this::getDistinctGroupSize);
+        return getLargest(students, Collectors.collectingAndThen(
+                Collectors.mapping(Student::getFirstName, Collectors.toSet()), Set::size));
     }
 
     @Override
@@ -114,21 +113,21 @@ public class HardStudentDB implements StudentGroupQuery {
 
     @Override
     public String getMinStudentFirstName(List<Student> students) {
-        return students.stream().min(Student::compareTo).map(Student::getFirstName).orElse("");
+        return streams.of(students).min(Student::compareTo).map(Student::getFirstName).orElse("");
     }
 
     @Override
     public List<Student> sortStudentsById(Collection<Student> students) {
-        return students.stream().sorted(Student::compareTo).collect(Collectors.toList());
+        return streams.of(students).sorted(Student::compareTo).collect(Collectors.toList());
     }
 
     @Override
     public List<Student> sortStudentsByName(Collection<Student> students) {
-        return students.stream().sorted(studentComparatorByName).collect(Collectors.toList());
+        return streams.of(students).sorted(studentComparatorByName).collect(Collectors.toList());
     }
 
     private List<Student> findStudentsBy(Collection<Student> students, Predicate<Student> predicate) {
-        return students.stream().filter(predicate).sorted(studentComparatorByName).collect(Collectors.toList());
+        return streams.of(students).filter(predicate).sorted(studentComparatorByName).collect(Collectors.toList());
     }
 
     @Override
@@ -143,14 +142,14 @@ public class HardStudentDB implements StudentGroupQuery {
 
     @Override
     public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
-        return students.stream()
+        return streams.of(students)
                 .filter(student -> student.getGroup().equals(group))
                 .sorted(studentComparatorByName).collect(Collectors.toList());
     }
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
-        return findStudentsByGroup(students, group).stream()
+        return streams.of(findStudentsByGroup(students, group))
                 .collect(Collectors.toMap(
                         Student::getLastName,
                         Student::getFirstName,
@@ -0,0 +1,355 @@
+package ru.ifmo.badikova.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Student store keeping indexes of its roster.
+ * Queries without a collection and queries on the list returned by {@link #getStudents()} are answered
+ * from the indexes, queries on other collections are delegated to {@link HardStudentDB}.
+ */
+public class IndexedStudentDB implements StudentGroupQuery {
+    private static final Comparator<Student> BY_NAME = Comparator
+            .comparing(Student::getLastName)
+            .thenComparing(Student::getFirstName)
+            .thenComparing(Student::getId);
+
+    private final HardStudentDB fallback = new HardStudentDB();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<Integer, Student> byId = new TreeMap<>();
+    private final NavigableSet<Student> byName = new TreeSet<>(BY_NAME);
+    private final Map<String, NavigableSet<Student>> byFirstName = new HashMap<>();
+    private final Map<String, NavigableSet<Student>> byLastName = new HashMap<>();
+    private final NavigableMap<String, GroupIndex> byGroup = new TreeMap<>();
+    // Groups ordered by answers to largest group queries, updated with their aggregates.
+    private final NavigableSet<GroupIndex> bySize = new TreeSet<>(largestFirst(group -> group.byId.size()));
+    private final NavigableSet<GroupIndex> byFirstNames = new TreeSet<>(largestFirst(group -> group.firstNames.size()));
+    // Roster in id order, rebuilt lazily after modification.
+    private List<Student> students;
+    private long version;
+
+    private static class GroupIndex {
+        final String name;
+        final NavigableSet<Student> byName = new TreeSet<>(BY_NAME);
+        final NavigableSet<Student> byId = new TreeSet<>();
+        final Map<String, Integer> firstNames = new HashMap<>();
+
+        GroupIndex(String name) {
+            this.name = name;
+        }
+
+        void add(Student student) {
+            byName.add(student);
+            byId.add(student);
+            firstNames.merge(student.getFirstName(), 1, Integer::sum);
+        }
+
+        void remove(Student student) {
+            byName.remove(student);
+            byId.remove(student);
+            firstNames.computeIfPresent(student.getFirstName(), (name, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    // Orders groups by aggregate descending and then by name, the group must be reinserted when the aggregate changes.
+    private static Comparator<GroupIndex> largestFirst(ToIntFunction<GroupIndex> aggregate) {
+        return Comparator.comparingInt(aggregate).reversed().thenComparing(group -> group.name);
+    }
+
+    public IndexedStudentDB(Collection<Student> students) {
+        students.forEach(this::insert);
+    }
+
+    public IndexedStudentDB() {
+        this(List.of());
+    }
+
+    private <T> T write(Supplier<T> update) {
+        lock.writeLock().lock();
+        try {
+            return update.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns immutable roster in id order.
+     * Queries given this very list, compared by identity, are answered from the indexes until the store is modified.
+     * After that the list stays valid, but queries on it scan it. The first call after a modification copies
+     * the roster in {@code O(n)}, the queries without a collection read the indexes and need no roster.
+     */
+    public List<Student> getStudents() {
+        lock.readLock().lock();
+        try {
+            if (students != null) {
+                return students;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (students == null) {
+                students = List.copyOf(byId.values());
+            }
+            return students;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns number of modifications, changing whenever answers of the queries may change. */
+    public long getVersion() {
+        return read(() -> version);
+    }
+
+    // Whether the collection is the current roster, so that the indexes describe it.
+    private boolean isIndexed(Collection<Student> students) {
+        return students != null && students == this.students;
+    }
+
+    /** Adds student, returns {@code false} if there is a student with the same id. */
+    public boolean insert(Student student) {
+        return write(() -> !byId.containsKey(student.getId()) && add(student));
+    }
+
+    /** Replaces student with the same id, returns {@code false} if there is none. */
+    public boolean update(Student student) {
+        return write(() -> remove(student.getId()) != null && add(student));
+    }
+
+    /** Removes student with the given id, returns it or {@code null} if there is none. */
+    public Student remove(int id) {
+        return write(() -> {
+            Student student = byId.remove(id);
+            if (student != null) {
+                modified();
+                byName.remove(student);
+                removeFrom(byFirstName, student.getFirstName(), student);
+                removeFrom(byLastName, student.getLastName(), student);
+                GroupIndex group = byGroup.get(student.getGroup());
+                bySize.remove(group);
+                byFirstNames.remove(group);
+                group.remove(student);
+                if (group.byId.isEmpty()) {
+                    byGroup.remove(student.getGroup());
+                } else {
+                    bySize.add(group);
+                    byFirstNames.add(group);
+                }
+            }
+            return student;
+        });
+    }
+
+    // Called under the write lock by every change, rejected updates keep the roster and the version.
+    private void modified() {
+        students = null;
+        version++;
+    }
+
+    private boolean add(Student student) {
+        modified();
+        byId.put(student.getId(), student);
+        byName.add(student);
+        byFirstName.computeIfAbsent(student.getFirstName(), name -> new TreeSet<>(BY_NAME)).add(student);
+        byLastName.computeIfAbsent(student.getLastName(), name -> new TreeSet<>(BY_NAME)).add(student);
+        GroupIndex group = byGroup.computeIfAbsent(student.getGroup(), GroupIndex::new);
+        bySize.remove(group);
+        byFirstNames.remove(group);
+        group.add(student);
+        bySize.add(group);
+        byFirstNames.add(group);
+        return true;
+    }
+
+    private static void removeFrom(Map<String, NavigableSet<Student>> index, String key, Student student) {
+        NavigableSet<Student> students = index.get(key);
+        students.remove(student);
+        if (students.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The read lock is reentrant, so indexed queries taking it themselves are answered for the checked roster.
+    private <T> T query(Collection<Student> students, Supplier<T> indexed, Function<HardStudentDB, T> scan) {
+        lock.readLock().lock();
+        try {
+            if (isIndexed(students)) {
+                return indexed.get();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scan.apply(fallback);
+    }
+
+    private List<Group> getGroups(Function<GroupIndex, Collection<Student>> order) {
+        return byGroup.entrySet().stream()
+                .map(entry -> new Group(entry.getKey(), new ArrayList<>(order.apply(entry.getValue()))))
+                .collect(Collectors.toList());
+    }
+
+    private static String getLargest(NavigableSet<GroupIndex> groups) {
+        return groups.isEmpty() ? "" : groups.first().name;
+    }
+
+    private static List<Student> find(Map<String, NavigableSet<Student>> index, String key) {
+        return new ArrayList<>(index.getOrDefault(key, Collections.emptyNavigableSet()));
+    }
+
+    public List<Group> getGroupsByName() {
+        return read(() -> getGroups(group -> group.byName));
+    }
+
+    public List<Group> getGroupsById() {
+        return read(() -> getGroups(group -> group.byId));
+    }
+
+    public String getLargestGroup() {
+        return read(() -> getLargest(bySize));
+    }
+
+    public String getLargestGroupFirstName() {
+        return read(() -> getLargest(byFirstNames));
+    }
+
+    public Set<String> getDistinctFirstNames() {
+        return read(() -> new TreeSet<>(byFirstName.keySet()));
+    }
+
+    public String getMinStudentFirstName() {
+        return read(() -> byId.isEmpty() ? "" : byId.firstEntry().getValue().getFirstName());
+    }
+
+    public List<Student> sortStudentsById() {
+        return read(() -> new ArrayList<>(byId.values()));
+    }
+
+    public List<Student> sortStudentsByName() {
+        return read(() -> new ArrayList<>(byName));
+    }
+
+    public List<Student> findStudentsByFirstName(String name) {
+        return read(() -> find(byFirstName, name));
+    }
+
+    public List<Student> findStudentsByLastName(String name) {
+        return read(() -> find(byLastName, name));
+    }
+
+    public List<Student> findStudentsByGroup(String group) {
+        return read(() -> new ArrayList<>(byGroup.containsKey(group) ? byGroup.get(group).byName : List.of()));
+    }
+
+    public Map<String, String> findStudentNamesByGroup(String group) {
+        return read(() -> {
+            Map<String, String> names = new HashMap<>();
+            // Students are ordered by last and then first name, so the first one of a last name has the least first name.
+            if (byGroup.containsKey(group)) {
+                byGroup.get(group).byName.forEach(student -> names.putIfAbsent(student.getLastName(), student.getFirstName()));
+            }
+            return names;
+        });
+    }
+
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> students) {
+        return query(students, this::getGroupsByName, db -> db.getGroupsByName(students));
+    }
+
+    @Override
+    public List<Group> getGroupsById(Collection<Student> students) {
+        return query(students, this::getGroupsById, db -> db.getGroupsById(students));
+    }
+
+    @Override
+    public String getLargestGroup(Collection<Student> students) {
+        return query(students, this::getLargestGroup, db -> db.getLargestGroup(students));
+    }
+
+    @Override
+    public String getLargestGroupFirstName(Collection<Student> students) {
+        return query(students, this::getLargestGroupFirstName, db -> db.getLargestGroupFirstName(students));
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> students) {
+        return fallback.getFirstNames(students);
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> students) {
+        return fallback.getLastNames(students);
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> students) {
+        return fallback.getGroups(students);
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> students) {
+        return fallback.getFullNames(students);
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> students) {
+        return query(students, this::getDistinctFirstNames, db -> db.getDistinctFirstNames(students));
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> students) {
+        return query(students, this::getMinStudentFirstName, db -> db.getMinStudentFirstName(students));
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> students) {
+        return query(students, this::sortStudentsById, db -> db.sortStudentsById(students));
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return query(students, this::sortStudentsByName, db -> db.sortStudentsByName(students));
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return query(students, () -> findStudentsByFirstName(name), db -> db.findStudentsByFirstName(students, name));
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return query(students, () -> findStudentsByLastName(name), db -> db.findStudentsByLastName(students, name));
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return query(students, () -> findStudentsByGroup(group), db -> db.findStudentsByGroup(students, group));
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        return query(students, () -> findStudentNamesByGroup(group), db -> db.findStudentNamesByGroup(students, group));
+    }
+}
@@ -0,0 +1,23 @@
+package ru.ifmo.badikova.student;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Streams over collections of at least the threshold size are parallel.
+ * Parallel streams keep encounter order for sorted, toList and groupingBy, so results match sequential ones.
+ */
+class ParallelStreams {
+    /** Threshold of instances that never go parallel. */
+    static final int SEQUENTIAL = Integer.MAX_VALUE;
+
+    private final int threshold;
+
+    ParallelStreams(int threshold) {
+        this.threshold = threshold;
+    }
+
+    <T> Stream<T> of(Collection<T> elements) {
+        return elements.size() >= threshold ? elements.parallelStream() : elements.stream();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.ifmo.badikova.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+import info.kgeorgiy.java.advanced.student.StudentQuery;
+
+import java.util.*;
+
+/**
+ * Time of queries of {@link StudentDB} against {@link ColumnarStudentDB} over a {@link StudentTable},
+ * and of group queries of {@link HardStudentDB}, sequential and parallel.
+ * <p>
+ * Usage: {@code StudentBenchmark [<size>...]}, sizes default to 10K, 1M and 10M students.
+ */
+public class StudentBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10_000, 1_000_000, 10_000_000};
+        for (int size : sizes) {
+            List<Student> students = generate(size, new Random(0));
+            StudentTable table = new StudentTable(students);
+            System.out.printf("%,d students %33s %13s%n", size, "baseline", "candidate");
+
+            compare("getFirstNames", new StudentDB(), students, new ColumnarStudentDB(), table,
+                    (db, list) -> db.getFirstNames(list));
+            compare("getDistinctFirstNames", new StudentDB(), students, new ColumnarStudentDB(), table,
+                    (db, list) -> db.getDistinctFirstNames(list));
+            compare("sortStudentsByName", new StudentDB(), students, new ColumnarStudentDB(), table,
+                    StudentQuery::sortStudentsByName);
+            compare("findStudentsByGroup", new StudentDB(), students, new ColumnarStudentDB(), table,
+                    (db, list) -> db.findStudentsByGroup(list, "g1"));
+            compare("findStudentNamesByGroup", new StudentDB(), students, new ColumnarStudentDB(), table,
+                    (db, list) -> db.findStudentNamesByGroup(list, "g1"));
+
+            StudentGroupQuery sequential = new HardStudentDB();
+            StudentGroupQuery parallel = new HardStudentDB(0);
+            compare("getGroupsByName", sequential, students, parallel, students, StudentGroupQuery::getGroupsByName);
+            compare("getGroupsById", sequential, students, parallel, students, StudentGroupQuery::getGroupsById);
+            compare("getLargestGroup", sequential, students, parallel, students, StudentGroupQuery::getLargestGroup);
+            compare("getLargestGroupFirstName", sequential, students, parallel, students,
+                    StudentGroupQuery::getLargestGroupFirstName);
+        }
+    }
+
+    private interface Query<Q> {
+        Object run(Q db, List<Student> students);
+    }
+
+    private static List<Student> generate(int size, Random random) {
+        List<Student> students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            students.add(new Student(random.nextInt(),
+                    "F" + random.nextInt(1000), "L" + random.nextInt(10000), "g" + random.nextInt(1000)));
+        }
+        return students;
+    }
+
+    private static <Q> void compare(String name, Q baseline, List<Student> baselineStudents,
+                                    Q candidate, List<Student> candidateStudents, Query<Q> query) {
+        double before = measure(() -> query.run(baseline, baselineStudents));
+        double after = measure(() -> query.run(candidate, candidateStudents));
+        System.out.printf("  %-26s %10.1f ms %10.1f ms %6.2fx%n", name, before, after, before / after);
+    }
+
+    // Best of ROUNDS runs after a warm-up one, in milliseconds.
+    private static double measure(Runnable task) {
+        task.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+}
@@ -14,9 +14,19 @@ public class StudentDB implements StudentQuery {
 
     private final Comparator<Student> studentComparator = Comparator.comparing(Student::getLastName).
             thenComparing(Student::getFirstName).thenComparing(Student::getId);
+    private final ParallelStreams streams;
+
+    /** Creates instance processing collections of at least {@code parallelThreshold} students in parallel. */
+    public StudentDB(int parallelThreshold) {
+        this.streams = new ParallelStreams(parallelThreshold);
+    }
+
+    public StudentDB() {
+        this(ParallelStreams.SEQUENTIAL);
+    }
 
     private List<String> getName(List<Student> students, Function<Student, String> f) {
-        return students.stream().map(f).collect(Collectors.toList());
+        return streams.of(students).map(f).collect(Collectors.toList());
     }
 
     @Override
@@ -36,46 +46,46 @@ public class StudentDB implements StudentQuery {
 
     @Override
     public List<String> getFullNames(List<Student> students) {
-        return students.stream().map(student -> student.getFirstName() + " " + student.getLastName()).collect(Collectors.toList());
+        return streams.of(students).map(student -> student.getFirstName() + " " + student.getLastName()).collect(Collectors.toList());
     }
 
     @Override
     public Set<String> getDistinctFirstNames(List<Student> students) {
-        return students.stream().map(Student::getFirstName).collect(Collectors.toCollection(TreeSet::new));
+        return streams.of(students).map(Student::getFirstName).collect(Collectors.toCollection(TreeSet::new));
     }
 
     @Override
     public String getMinStudentFirstName(List<Student> students) {
-        return students.stream().min(Student::compareTo).map(Student::getFirstName).orElse("");
+        return streams.of(students).min(Student::compareTo).map(Student::getFirstName).orElse("");
     }
 
     @Override
     public List<Student> sortStudentsById(Collection<Student> students) {
-        return students.stream().sorted(Student::compareTo).collect(Collectors.toList());
+        return streams.of(students).sorted(Student::compareTo).collect(Collectors.toList());
     }
 
     @Override
     public List<Student> sortStudentsByName(Collection<Student> students) {
-        return students.stream().sorted(studentComparator).collect(Collectors.toList());
+        return streams.of(students).sorted(studentComparator).collect(Collectors.toList());
     }
 
     @Override
     public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
-        return students.stream().filter(student -> student.getFirstName().equals(name)).sorted(studentComparator).collect(Collectors.toList());
+        return streams.of(students).filter(student -> student.getFirstName().equals(name)).sorted(studentComparator).collect(Collectors.toList());
     }
 
     @Override
     public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
-        return students.stream().filter(student -> student.getLastName().equals(name)).sorted(studentComparator).collect(Collectors.toList());
+        return streams.of(students).filter(student -> student.getLastName().equals(name)).sorted(studentComparator).collect(Collectors.toList());
     }
 
     @Override
     public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
-        return students.stream().filter(student -> student.getGroup().equals(group)).sorted(studentComparator).collect(Collectors.toList());
+        return streams.of(students).filter(student -> student.getGroup().equals(group)).sorted(studentComparator).collect(Collectors.toList());
     }
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
-        return findStudentsByGroup(students, group).stream().collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo)));
+        return streams.of(findStudentsByGroup(students, group)).collect(Collectors.toMap(Student::getLastName, Student::getFirstName, BinaryOperator.minBy(String::compareTo)));
     }
 }
@@ -0,0 +1,135 @@
+package ru.ifmo.badikova.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+
+/**
+ * Columnar list of students: ids and dictionary codes of first names, last names and groups,
+ * with one dictionary shared by the three columns. Queries of {@link ColumnarStudentDB} read the columns.
+ * <p>
+ * {@link Student} compares by identity, so every row is one object: a student added as an object is
+ * returned as is, a row added by its fields is created on first access and kept.
+ * Appending is not thread-safe.
+ */
+public class StudentTable extends AbstractList<Student> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private int[] ids;
+    private int[] firstNames;
+    private int[] lastNames;
+    private int[] groups;
+    // Students of the rows, null for rows not accessed yet.
+    private Student[] rows;
+    private int size;
+    // Position of every dictionary string in sorted order, rebuilt when the dictionary grows.
+    private volatile int[] ranks;
+
+    public StudentTable(Collection<Student> students) {
+        int capacity = Math.max(students.size(), INITIAL_CAPACITY);
+        ids = new int[capacity];
+        firstNames = new int[capacity];
+        lastNames = new int[capacity];
+        groups = new int[capacity];
+        rows = new Student[capacity];
+        students.forEach(this::add);
+    }
+
+    public StudentTable() {
+        this(List.of());
+    }
+
+    @Override
+    public boolean add(Student student) {
+        add(student.getId(), student.getFirstName(), student.getLastName(), student.getGroup());
+        rows[size - 1] = student;
+        return true;
+    }
+
+    /** Appends student without creating {@link Student} object. */
+    public void add(int id, String firstName, String lastName, String group) {
+        if (size == ids.length) {
+            int capacity = 2 * size;
+            ids = Arrays.copyOf(ids, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            groups = Arrays.copyOf(groups, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        ids[size] = id;
+        firstNames[size] = encode(firstName);
+        lastNames[size] = encode(lastName);
+        groups[size] = encode(group);
+        size++;
+        modCount++;
+    }
+
+    private int encode(String string) {
+        return codes.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    /** Returns dictionary code of the string, {@code -1} if no student has it. */
+    int code(String string) {
+        return codes.getOrDefault(string, -1);
+    }
+
+    String string(int code) {
+        return strings.get(code);
+    }
+
+    int[] ranks() {
+        int[] current = ranks;
+        if (current == null || current.length != strings.size()) {
+            Integer[] order = new Integer[strings.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparing(strings::get));
+            current = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                current[order[i]] = i;
+            }
+            ranks = current;
+        }
+        return current;
+    }
+
+    int getId(int index) {
+        return ids[index];
+    }
+
+    int getFirstName(int index) {
+        return firstNames[index];
+    }
+
+    int getLastName(int index) {
+        return lastNames[index];
+    }
+
+    int getGroup(int index) {
+        return groups[index];
+    }
+
+    @Override
+    public Student get(int index) {
+        Objects.checkIndex(index, size);
+        // Student has only final fields, so a row published without locking is seen complete.
+        Student student = rows[index];
+        return student != null ? student : materialize(index);
+    }
+
+    private synchronized Student materialize(int index) {
+        if (rows[index] == null) {
+            rows[index] = new Student(ids[index], strings.get(firstNames[index]), strings.get(lastNames[index]), strings.get(groups[index]));
+        }
+        return rows[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
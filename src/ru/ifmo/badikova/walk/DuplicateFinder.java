@@ -0,0 +1,167 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds groups of non-empty regular files with equal contents in the given file trees.
+ * Files are grouped by size, then by a hash of their first and last blocks,
+ * and only files still sharing a group are hashed entirely.
+ * Groups, ordered by their first file, and files within a group come in walk order.
+ * A file reached several times, through overlapping roots or hard links, is reported once,
+ * under the name it is first reached by.
+ */
+public class DuplicateFinder {
+    private static final int BLOCK = 4096;
+
+    private final HashAlgorithm algorithm;
+    private final HashCache cache;
+    private final int threads;
+
+    /**
+     * @param cache   cache of already known full hashes, may be {@code null}
+     * @param threads amount of hashing threads, {@code 0} for hashing on the calling thread
+     */
+    public DuplicateFinder(HashAlgorithm algorithm, HashCache cache, int threads) {
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.threads = threads;
+    }
+
+    private static class Candidate {
+        final int index;
+        final FileEntry entry;
+        // Null when the file cannot be read.
+        byte[] hash;
+
+        Candidate(int index, FileEntry entry) {
+            this.index = index;
+            this.entry = entry;
+        }
+
+        long size() {
+            return entry.attrs.size();
+        }
+
+        Object key() {
+            return List.of(size(), ByteBuffer.wrap(hash));
+        }
+    }
+
+    private interface HashFunction {
+        byte[] hash(Candidate candidate) throws IOException;
+    }
+
+    public List<List<HashResult>> find(Stream<String> roots) throws IOException {
+        Map<Long, List<Candidate>> bySize = new LinkedHashMap<>();
+        Set<Object> files = new HashSet<>();
+        try (roots; FileTreeIterator entries = new FileTreeIterator(roots.iterator(), true)) {
+            for (int index = 0; entries.hasNext(); index++) {
+                FileEntry entry = entries.next();
+                // Empty files are all equal, a group of them says nothing.
+                if (!entry.isFailed() && entry.attrs.isRegularFile() && entry.attrs.size() > 0 && files.add(identity(entry))) {
+                    bySize.computeIfAbsent(entry.attrs.size(), size -> new ArrayList<>()).add(new Candidate(index, entry));
+                }
+            }
+        }
+
+        List<Candidate> candidates = duplicates(bySize.values());
+        ExecutorService workers = threads > 0 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            hashAll(workers, candidates, candidate ->
+                    Hasher.getPartialHash(candidate.entry.path, algorithm, candidate.size(), BLOCK));
+            candidates = duplicates(group(candidates));
+
+            List<Candidate> large = candidates.stream()
+                    .filter(candidate -> candidate.size() > 2L * BLOCK)
+                    .collect(Collectors.toList());
+            hashAll(workers, large, candidate ->
+                    Hasher.hash(candidate.entry.path, candidate.entry.attrs, algorithm, cache));
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+
+        return group(candidates).stream()
+                .filter(group -> group.size() > 1)
+                .sorted(Comparator.comparingInt(group -> group.get(0).index))
+                .map(group -> group.stream()
+                        .map(candidate -> new HashResult(candidate.entry.name, candidate.hash))
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    // File key when the file system provides one, so that hard links are the same file, the normalized path otherwise.
+    private static Object identity(FileEntry entry) {
+        Object key = entry.attrs.fileKey();
+        return key != null ? key : entry.path.toAbsolutePath().normalize();
+    }
+
+    private static List<Candidate> duplicates(Collection<List<Candidate>> groups) {
+        return groups.stream()
+                .filter(group -> group.size() > 1)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    private static Collection<List<Candidate>> group(List<Candidate> candidates) {
+        return candidates.stream()
+                .filter(candidate -> candidate.hash != null)
+                .collect(Collectors.groupingBy(Candidate::key, LinkedHashMap::new, Collectors.toList()))
+                .values();
+    }
+
+    private static void hashOne(Candidate candidate, HashFunction function) {
+        try {
+            candidate.hash = function.hash(candidate);
+        } catch (IOException e) {
+            if (!Hasher.isCancelled(e)) {
+                System.err.println("Failed to read file " + candidate.entry.name);
+                WalkMetrics.error();
+            }
+            candidate.hash = null;
+        }
+    }
+
+    private static void hashAll(ExecutorService workers, List<Candidate> candidates, HashFunction function) throws IOException {
+        if (workers == null) {
+            for (Candidate candidate : candidates) {
+                hashOne(candidate, function);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = candidates.stream()
+                .map(candidate -> (Callable<Void>) () -> {
+                    hashOne(candidate, function);
+                    return null;
+                })
+                .collect(Collectors.toList());
+        try {
+            for (Future<Void> future : workers.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing duplicates");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+}
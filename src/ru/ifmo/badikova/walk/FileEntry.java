@@ -0,0 +1,26 @@
+package ru.ifmo.badikova.walk;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+class FileEntry {
+    final String name;
+    // Null when the name is not a valid path or the file could not be visited.
+    final Path path;
+    // Null when attributes were not read.
+    final BasicFileAttributes attrs;
+
+    FileEntry(String name, Path path, BasicFileAttributes attrs) {
+        this.name = name;
+        this.path = path;
+        this.attrs = attrs;
+    }
+
+    static FileEntry failed(String name) {
+        return new FileEntry(name, null, null);
+    }
+
+    boolean isFailed() {
+        return path == null;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+interface FileEntryIterator extends Iterator<FileEntry>, Closeable {
+    @Override
+    void close();
+}
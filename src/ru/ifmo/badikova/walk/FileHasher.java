@@ -0,0 +1,202 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hashes files and file trees into lazily computed {@link HashResult results}.
+ * Results come in input order, regardless of the amount of hashing threads.
+ * Returned streams hold open directories and worker threads, so they must be closed.
+ */
+public class FileHasher {
+    private static final int WINDOW_PER_THREAD = 64;
+    private static final int PREFETCH_PER_THREAD = 4;
+
+    private final HashAlgorithm algorithm;
+    private final HashCache cache;
+    private final int threads;
+    private final boolean prefetch;
+    private final TreeHasher tree;
+
+    /**
+     * @param cache    cache of already known hashes, may be {@code null}
+     * @param threads  amount of hashing threads, {@code 0} for hashing on the consuming thread
+     * @param prefetch whether directories are listed ahead of the walk on the same threads,
+     *                 useful for network file systems where every call waits for a round trip
+     * @param tree     hasher of large files in parallel chunks, may be {@code null}
+     */
+    public FileHasher(HashAlgorithm algorithm, HashCache cache, int threads, boolean prefetch, TreeHasher tree) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Non-negative amount of threads expected: " + threads);
+        }
+        if (prefetch && threads == 0) {
+            throw new IllegalArgumentException("Prefetching directories requires threads");
+        }
+        this.algorithm = algorithm;
+        this.cache = cache;
+        this.threads = threads;
+        this.prefetch = prefetch;
+        this.tree = tree;
+    }
+
+    public FileHasher(HashAlgorithm algorithm, HashCache cache, int threads, boolean prefetch) {
+        this(algorithm, cache, threads, prefetch, null);
+    }
+
+    public FileHasher(HashAlgorithm algorithm, HashCache cache, int threads) {
+        this(algorithm, cache, threads, false);
+    }
+
+    public FileHasher(HashAlgorithm algorithm) {
+        this(algorithm, null, 0);
+    }
+
+    /** Hashes every given file. */
+    public Stream<HashResult> hash(Stream<String> files) {
+        return results(files, false);
+    }
+
+    /** Hashes every file in the given file trees. */
+    public Stream<HashResult> walk(Stream<String> roots) {
+        return results(roots, true);
+    }
+
+    /**
+     * Publishes results of {@link #walk(Stream)} of the given roots.
+     * Every subscriber gets its own walk, driven by its demand on the {@code executor}.
+     */
+    public Flow.Publisher<HashResult> walkPublisher(List<String> roots, Executor executor) {
+        return new StreamPublisher<>(() -> walk(roots.stream()), executor);
+    }
+
+    private Stream<HashResult> results(Stream<String> names, boolean recursive) {
+        Iterator<HashResult> results;
+        Runnable close;
+        if (threads == 0) {
+            FileTreeIterator entries = new FileTreeIterator(names.iterator(), recursive);
+            results = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public HashResult next() {
+                    return hash(entries.next());
+                }
+            };
+            close = entries::close;
+        } else {
+            // Daemon threads do not keep the JVM alive when a stream is abandoned without closing.
+            ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "walk-hasher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            FileEntryIterator entries = prefetch && recursive
+                    ? new PrefetchingTreeIterator(names.iterator(), workers, threads * PREFETCH_PER_THREAD)
+                    : new FileTreeIterator(names.iterator(), recursive);
+            OrderedIterator ordered = new OrderedIterator(entries, workers);
+            results = ordered;
+            close = ordered::close;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(close)
+                .onClose(names::close);
+    }
+
+    private HashResult hash(FileEntry entry) {
+        if (entry.isFailed()) {
+            return new HashResult(entry.name, Hasher.zero(algorithm));
+        }
+        BasicFileAttributes attrs = entry.attrs;
+        if (attrs == null && cache != null) {
+            try {
+                attrs = Files.readAttributes(entry.path, BasicFileAttributes.class);
+            } catch (IOException ignored) {
+                // Hashing reports the error itself.
+            }
+        }
+        if (tree != null) {
+            return tree.hash(entry.name, entry.path, attrs, cache);
+        }
+        return new HashResult(entry.name, Hasher.getHash(entry.path, attrs, algorithm, cache));
+    }
+
+    /**
+     * Keeps up to {@code threads * WINDOW_PER_THREAD} entries hashing ahead of the consumer
+     * and returns their results in submission order.
+     */
+    private class OrderedIterator implements Iterator<HashResult> {
+        private final FileEntryIterator entries;
+        private final ExecutorService workers;
+        private final Queue<Future<HashResult>> window = new ArrayDeque<>();
+
+        OrderedIterator(FileEntryIterator entries, ExecutorService workers) {
+            this.entries = entries;
+            this.workers = workers;
+        }
+
+        private void fill() {
+            while (window.size() < threads * WINDOW_PER_THREAD && entries.hasNext()) {
+                FileEntry entry = entries.next();
+                window.add(entry.isFailed()
+                        ? CompletableFuture.completedFuture(hash(entry))
+                        : workers.submit(() -> hash(entry)));
+            }
+            if (!entries.hasNext()) {
+                // Submitted hashes still complete, and threads exit once the window is drained.
+                workers.shutdown();
+            }
+            WalkMetrics.hashQueue(window.size());
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            return !window.isEmpty();
+        }
+
+        @Override
+        public HashResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return window.remove().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for hash"));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        void close() {
+            workers.shutdownNow();
+            entries.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily walks given roots in {@link Files#walkFileTree} order without following links.
+ * Roots and files that cannot be visited are reported as {@link FileEntry#failed failed} entries.
+ * In flat mode every root is reported as is.
+ */
+class FileTreeIterator implements FileEntryIterator {
+    private final Iterator<String> roots;
+    private final boolean recursive;
+    private final Deque<Directory> directories = new ArrayDeque<>();
+    private FileEntry next;
+
+    private static class Directory {
+        final DirectoryStream<Path> stream;
+        final Iterator<Path> iterator;
+
+        Directory(DirectoryStream<Path> stream) {
+            this.stream = stream;
+            this.iterator = stream.iterator();
+        }
+    }
+
+    FileTreeIterator(Iterator<String> roots, boolean recursive) {
+        this.roots = roots;
+        this.recursive = recursive;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (!directories.isEmpty()) {
+                advanceDirectory();
+            } else if (roots.hasNext()) {
+                visitRoot(roots.next());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public FileEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FileEntry result = next;
+        next = null;
+        return result;
+    }
+
+    private void advanceDirectory() {
+        Directory directory = directories.peek();
+        try {
+            if (directory.iterator.hasNext()) {
+                visit(directory.iterator.next());
+                return;
+            }
+        } catch (DirectoryIteratorException e) {
+            System.err.println("Failed to read directory " + e.getCause().getMessage());
+            WalkMetrics.error();
+        }
+        directories.pop();
+        closeDirectory(directory);
+    }
+
+    private void visitRoot(String root) {
+        Path path;
+        try {
+            path = Paths.get(root);
+        } catch (InvalidPathException e) {
+            WalkMetrics.error();
+            next = FileEntry.failed(root);
+            return;
+        }
+        if (recursive) {
+            visit(path);
+        } else {
+            next = new FileEntry(root, path, null);
+        }
+    }
+
+    private void visit(Path path) {
+        long start = WalkMetrics.now();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attrs.isDirectory()) {
+                directories.push(new Directory(Files.newDirectoryStream(path)));
+                WalkMetrics.directory();
+            } else {
+                next = new FileEntry(path.toString(), path, attrs);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read file " + path.toString());
+            WalkMetrics.error();
+            next = FileEntry.failed(path.toString());
+        }
+        WalkMetrics.record(WalkMetrics.Phase.WALK, start);
+    }
+
+    private static void closeDirectory(Directory directory) {
+        try {
+            directory.stream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        while (!directories.isEmpty()) {
+            closeDirectory(directories.pop());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.ifmo.badikova.walk;
+
+import java.nio.ByteBuffer;
+
+public interface HashAlgorithm {
+    String getName();
+
+    /** Length of produced hash in bytes. */
+    int getLength();
+
+    Digest newDigest();
+
+    interface Digest {
+        void update(ByteBuffer bytes);
+
+        byte[] finish();
+    }
+
+    static HashAlgorithm forName(String name) throws WalkException {
+        for (StandardHashAlgorithm algorithm : StandardHashAlgorithm.values()) {
+            if (algorithm.getName().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new WalkException("Unknown hash algorithm: " + name);
+    }
+}
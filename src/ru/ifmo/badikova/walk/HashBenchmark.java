@@ -0,0 +1,91 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of every {@link StandardHashAlgorithm} on data in memory and in files.
+ * <p>
+ * Usage: {@code HashBenchmark [<MiB> [<directory>]]}. Hashes a direct buffer of {@code MiB} megabytes,
+ * one file of that size and the same amount split into 64 KiB files, created in a temporary
+ * subdirectory of {@code directory} and removed afterwards. Files are hashed once before measuring,
+ * so they are read from the page cache.
+ */
+public class HashBenchmark {
+    private static final int SMALL_FILE = 1 << 16;
+    private static final int ROUNDS = 5;
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        Path parent = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        long bytes = (long) megabytes << 20;
+
+        byte[] data = new byte[(int) Math.min(bytes, 1 << 30)];
+        new Random(0).nextBytes(data);
+        ByteBuffer memory = ByteBuffer.allocateDirect(data.length).put(data).flip();
+
+        Path directory = Files.createTempDirectory(parent, "hash-benchmark");
+        try {
+            Path large = directory.resolve("large");
+            try (OutputStream out = Files.newOutputStream(large)) {
+                for (long written = 0; written < bytes; written += data.length) {
+                    out.write(data, 0, (int) Math.min(data.length, bytes - written));
+                }
+            }
+            List<Path> small = new ArrayList<>();
+            for (long offset = 0; offset < bytes; offset += SMALL_FILE) {
+                Path file = directory.resolve("small" + small.size());
+                Files.write(file, Arrays.copyOfRange(data, (int) (offset % data.length), (int) (offset % data.length) + SMALL_FILE));
+                small.add(file);
+            }
+
+            System.out.printf("%-8s %14s %14s %14s%n", "", "memory MiB/s", "large MiB/s", "64K MiB/s");
+            for (StandardHashAlgorithm algorithm : StandardHashAlgorithm.values()) {
+                double inMemory = throughput(memory.remaining(), () -> {
+                    HashAlgorithm.Digest digest = algorithm.newDigest();
+                    digest.update(memory.duplicate());
+                    digest.finish();
+                });
+                double inLarge = throughput(bytes, () -> Hasher.hash(large, algorithm));
+                double inSmall = throughput((long) small.size() * SMALL_FILE, () -> {
+                    for (Path file : small) {
+                        Hasher.hash(file, algorithm);
+                    }
+                });
+                System.out.printf("%-8s %14.0f %14.0f %14.0f%n", algorithm.getName(), inMemory, inLarge, inSmall);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    // Best of ROUNDS runs after a warm-up one, in MiB per second.
+    private static double throughput(long bytes, Task task) throws IOException {
+        task.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return bytes / 1048576.0 / (best / 1e9);
+    }
+}
@@ -0,0 +1,221 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent {@code (path, size, mtime, file key) -> hash} cache.
+ * <p>
+ * File layout: magic, hashing scheme, then records
+ * {@code (path, size, mtime nanos, file key hash, hash bytes)}.
+ * New records are appended, a later record for the same path overrides earlier ones.
+ * When the file holds too many overridden records or has a torn tail it is compacted
+ * into a temporary file that atomically replaces the old one, keeping its permissions.
+ * Compaction drops entries found stale by lookups and entries of files that no longer exist,
+ * entries of files not visited since loading are kept.
+ * Symbolic links are not cached: their attributes do not change with the target.
+ */
+public class HashCache {
+    private static final int MAGIC = 0x57484331;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final HashAlgorithm algorithm;
+    private final String scheme;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> updated = ConcurrentHashMap.newKeySet();
+    // Paths looked up or stored since loading, other entries are kept by compaction only if their files exist.
+    private final Set<String> confirmed = ConcurrentHashMap.newKeySet();
+    private int records;
+    private boolean compact;
+
+    private HashCache(Path file, HashAlgorithm algorithm, String scheme) {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.scheme = scheme;
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final int fileKey;
+        final byte[] hash;
+
+        Entry(long size, long modified, int fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        Entry(BasicFileAttributes attrs, byte[] hash) {
+            this(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), Objects.hashCode(attrs.fileKey()), hash);
+        }
+
+        boolean matches(Entry that) {
+            return size == that.size && modified == that.modified && fileKey == that.fileKey;
+        }
+    }
+
+    public static HashCache load(Path file, HashAlgorithm algorithm) throws IOException {
+        return load(file, algorithm, algorithm.getName());
+    }
+
+    /**
+     * Loads cache of hashes produced by {@code algorithm} in a way described by {@code scheme}.
+     * Entries stored under another scheme are dropped.
+     */
+    public static HashCache load(Path file, HashAlgorithm algorithm, String scheme) throws IOException {
+        HashCache cache = new HashCache(file, algorithm, scheme);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || !scheme.equals(in.readUTF())) {
+                cache.compact = true;
+                return cache;
+            }
+            cache.readRecords(in);
+        } catch (NoSuchFileException e) {
+            cache.compact = true;
+        } catch (EOFException e) {
+            // Torn header or record from an interrupted append, the tail is dropped by compaction.
+            cache.compact = true;
+        }
+        return cache;
+    }
+
+    private void readRecords(DataInputStream in) throws IOException {
+        byte[] hash = new byte[algorithm.getLength()];
+        while (true) {
+            int high = in.read();
+            if (high == -1) {
+                return;
+            }
+            byte[] path = new byte[(high << 8) | in.readUnsignedByte()];
+            in.readFully(path);
+            long size = in.readLong();
+            long modified = in.readLong();
+            int fileKey = in.readInt();
+            in.readFully(hash);
+            entries.put(new String(path, StandardCharsets.UTF_8), new Entry(size, modified, fileKey, hash.clone()));
+            records++;
+        }
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().toString();
+    }
+
+    /** Returns stored hash of the file if its attributes are unchanged, {@code null} otherwise. */
+    public byte[] lookup(Path path, BasicFileAttributes attrs) {
+        if (attrs.isSymbolicLink()) {
+            return null;
+        }
+        String key = key(path);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        confirmed.add(key);
+        if (!entry.matches(new Entry(attrs, null))) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.hash;
+    }
+
+    public void store(Path path, BasicFileAttributes attrs, byte[] hash) {
+        if (attrs.isSymbolicLink()) {
+            return;
+        }
+        String key = key(path);
+        entries.put(key, new Entry(attrs, hash));
+        confirmed.add(key);
+        updated.add(key);
+    }
+
+    public void save() throws IOException {
+        if (compact || records + updated.size() > 2 * entries.size()) {
+            Path parent = file.toAbsolutePath().getParent();
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            Set<String> removed = new HashSet<>();
+            try {
+                copyPermissions(tmp);
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    DataOutputStream out = open(channel);
+                    out.writeInt(MAGIC);
+                    out.writeUTF(scheme);
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        String key = entry.getKey();
+                        if (confirmed.contains(key) || Files.exists(Paths.get(key), LinkOption.NOFOLLOW_LINKS)) {
+                            write(out, key, entry.getValue());
+                        } else {
+                            removed.add(key);
+                        }
+                    }
+                    out.flush();
+                    channel.force(true);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            entries.keySet().removeAll(removed);
+            records = entries.size();
+            compact = false;
+        } else if (!updated.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                DataOutputStream out = open(channel);
+                for (String key : updated) {
+                    write(out, key, entries.get(key));
+                }
+                out.flush();
+                channel.force(true);
+            }
+            records += updated.size();
+        }
+        updated.clear();
+    }
+
+    // Temporary files are created accessible by the owner only.
+    private void copyPermissions(Path tmp) throws IOException {
+        try {
+            Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(file));
+        } catch (NoSuchFileException | UnsupportedOperationException ignored) {
+            // New cache file or a file system without POSIX permissions.
+        }
+    }
+
+    private static DataOutputStream open(FileChannel channel) {
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    private static void write(DataOutputStream out, String path, Entry entry) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        out.writeInt(entry.fileKey);
+        out.write(entry.hash);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes {@code <hex hash> <file>} lines in UTF-8 straight into a reused byte buffer.
+ * ASCII file names are copied char by char, others go through a reused encoder.
+ * Not thread-safe.
+ */
+public class HashLineWriter implements Closeable {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final byte[] lineSeparator;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer view = ByteBuffer.wrap(buffer);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private int position;
+
+    public HashLineWriter(WritableByteChannel channel, String lineSeparator) {
+        this.channel = channel;
+        this.lineSeparator = lineSeparator.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static HashLineWriter open(Path file, String lineSeparator) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new HashLineWriter(channel, lineSeparator);
+    }
+
+    public void writeAll(Stream<HashResult> results) throws IOException {
+        for (Iterator<HashResult> iterator = results.iterator(); iterator.hasNext(); ) {
+            write(iterator.next());
+        }
+    }
+
+    /** Writes groups of results separated by empty lines. */
+    public void writeGroups(List<List<HashResult>> groups) throws IOException {
+        for (List<HashResult> group : groups) {
+            for (HashResult result : group) {
+                write(result);
+            }
+            newLine();
+        }
+    }
+
+    /** Writes the result line followed by {@code <hash> <file>#<index>} lines of its chunks, if any. */
+    public void write(HashResult result) throws IOException {
+        writeLine(result.getHash(), result.getFile());
+        List<byte[]> chunks = result.getChunks();
+        for (int i = 0; i < chunks.size(); i++) {
+            writeLine(chunks.get(i), result.getFile() + "#" + i);
+        }
+    }
+
+    public void writeLine(byte[] hash, String file) throws IOException {
+        for (byte b : hash) {
+            put(HEX[(b >>> 4) & 0xf]);
+            put(HEX[b & 0xf]);
+        }
+        put((byte) ' ');
+        writeChars(file);
+        newLine();
+    }
+
+    public void newLine() throws IOException {
+        for (byte b : lineSeparator) {
+            put(b);
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = b;
+    }
+
+    private void writeChars(String chars) throws IOException {
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c >= 0x80) {
+                encode(CharBuffer.wrap(chars, i, length));
+                return;
+            }
+            put((byte) c);
+        }
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        CoderResult result;
+        do {
+            view.limit(buffer.length).position(position);
+            result = encoder.encode(chars, view, true);
+            position = view.position();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                flush();
+            }
+        } while (result.isOverflow());
+        do {
+            view.limit(buffer.length).position(position);
+            result = encoder.flush(view);
+            position = view.position();
+            if (result.isOverflow()) {
+                flush();
+            }
+        } while (result.isOverflow());
+    }
+
+    public void flush() throws IOException {
+        long start = WalkMetrics.now();
+        view.limit(position).position(0);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        position = 0;
+        WalkMetrics.record(WalkMetrics.Phase.OUTPUT, start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.ifmo.badikova.walk;
+
+import java.util.List;
+
+public class HashResult {
+    private final String file;
+    private final byte[] hash;
+    private final List<byte[]> chunks;
+
+    public HashResult(String file, byte[] hash, List<byte[]> chunks) {
+        this.file = file;
+        this.hash = hash;
+        this.chunks = chunks;
+    }
+
+    public HashResult(String file, byte[] hash) {
+        this(file, hash, List.of());
+    }
+
+    /** File name as it was given or found during the walk. */
+    public String getFile() {
+        return file;
+    }
+
+    /** Hash of the file, all zeroes when the file could not be read. Must not be modified. */
+    public byte[] getHash() {
+        return hash;
+    }
+
+    /** Hashes of file chunks when the file was {@link TreeHasher tree hashed} with chunk reporting, empty otherwise. */
+    public List<byte[]> getChunks() {
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(hash.length * 2 + 1 + file.length());
+        for (byte b : hash) {
+            line.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return line.append(' ').append(file).toString();
+    }
+}
@@ -1,30 +1,157 @@
 package ru.ifmo.badikova.walk;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.util.stream.Stream;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public class Hasher {
-    public static int getHash(Path path) {
-        int hash = 0x811c9dc5;
-        try (InputStream reader = Files.newInputStream(path)) {
-
-                byte[] bytes = new byte[1024];
-                int counter;
-                while ((counter = reader.read(bytes)) != -1) {
-                    for (int i = 0; i < counter; i++) {
-                        hash = (hash * 0x01000193) ^ (bytes[i] & 0xff);
-                    }
-                }
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Files at least this large are mapped instead of being read through the buffer. Mappings are released
+    // only by GC, so smaller files, which are many and gain little from mapping, are read.
+    private static final long MAP_THRESHOLD = 64L << 20;
+    // Mapping is limited by int positions of MappedByteBuffer, larger files are mapped in windows.
+    private static final long MAP_WINDOW = 1 << 30;
 
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public static byte[] getHash(Path path, HashAlgorithm algorithm) {
+        try {
+            return hash(path, algorithm);
+        } catch (IOException e) {
+            return failed(e, algorithm);
+        }
+    }
+
+    /** Same as {@link #getHash(Path, HashAlgorithm)}, reusing and updating {@code cache} entry when both it and {@code attrs} are given. */
+    public static byte[] getHash(Path path, BasicFileAttributes attrs, HashAlgorithm algorithm, HashCache cache) {
+        try {
+            return hash(path, attrs, algorithm, cache);
         } catch (IOException e) {
+            return failed(e, algorithm);
+        }
+    }
+
+    private static byte[] failed(IOException e, HashAlgorithm algorithm) {
+        if (!isCancelled(e)) {
             System.err.println(e.getMessage());
-            hash = 0;
+            WalkMetrics.error();
+        }
+        return zero(algorithm);
+    }
+
+    // Closing a result stream interrupts hashing threads, closing channels they read, which is not an error of the file.
+    static boolean isCancelled(IOException e) {
+        return e instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted();
+    }
+
+    static byte[] hash(Path path, BasicFileAttributes attrs, HashAlgorithm algorithm, HashCache cache) throws IOException {
+        if (cache == null || attrs == null) {
+            return hash(path, algorithm);
+        }
+        byte[] hash = cache.lookup(path, attrs);
+        if (hash == null) {
+            hash = hash(path, algorithm);
+            cache.store(path, attrs, hash);
+        } else {
+            WalkMetrics.file(true);
         }
         return hash;
     }
-}
 
+    static FileChannel open(Path path) throws IOException {
+        long start = WalkMetrics.now();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        WalkMetrics.record(WalkMetrics.Phase.OPEN, start);
+        return channel;
+    }
+
+    private static void update(HashAlgorithm.Digest digest, ByteBuffer bytes) {
+        long start = WalkMetrics.now();
+        WalkMetrics.bytes(bytes.remaining());
+        digest.update(bytes);
+        WalkMetrics.record(WalkMetrics.Phase.HASH, start);
+    }
+
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = WalkMetrics.now();
+        int read = position < 0 ? channel.read(buffer) : channel.read(buffer, position);
+        WalkMetrics.record(WalkMetrics.Phase.READ, start);
+        return read;
+    }
+
+    static byte[] hash(Path path, HashAlgorithm algorithm) throws IOException {
+        WalkMetrics.file(false);
+        try (FileChannel channel = open(path)) {
+            HashAlgorithm.Digest digest = algorithm.newDigest();
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                hashMapped(digest, channel, size);
+            } else {
+                hashBuffered(digest, channel);
+            }
+            return digest.finish();
+        }
+    }
+
+    public static byte[] zero(HashAlgorithm algorithm) {
+        return new byte[algorithm.getLength()];
+    }
+
+    /**
+     * Hashes only the first and the last {@code block} bytes of a file of the given size.
+     * Files of at most two blocks are hashed entirely, so the result equals their full hash.
+     */
+    public static byte[] getPartialHash(Path path, HashAlgorithm algorithm, long size, int block) throws IOException {
+        if (size <= 2L * block) {
+            return hash(path, algorithm);
+        }
+        try (FileChannel channel = open(path)) {
+            HashAlgorithm.Digest digest = algorithm.newDigest();
+            hashRange(digest, channel, 0, block);
+            hashRange(digest, channel, size - block, block);
+            return digest.finish();
+        }
+    }
+
+    /** Hashes {@code length} bytes from {@code position} with positional reads, safe for a channel shared between threads. */
+    static void hashRange(HashAlgorithm.Digest digest, FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        while (length > 0) {
+            buffer.clear().limit((int) Math.min(length, buffer.capacity()));
+            int read = read(channel, buffer, position);
+            if (read == -1) {
+                return;
+            }
+            buffer.flip();
+            update(digest, buffer);
+            position += read;
+            length -= read;
+        }
+    }
+
+    private static void hashBuffered(HashAlgorithm.Digest digest, FileChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        while (read(channel, buffer, -1) != -1) {
+            buffer.flip();
+            update(digest, buffer);
+            buffer.clear();
+        }
+    }
+
+    private static void hashMapped(HashAlgorithm.Digest digest, FileChannel channel, long size) throws IOException {
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+            update(digest, window);
+        }
+        // The file may have grown since size() was taken, hash the tail as a plain read.
+        channel.position(size);
+        hashBuffered(digest, channel);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.ifmo.badikova.walk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ * Percentiles are reported as upper bounds of their buckets.
+ */
+class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 1);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    LatencySnapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        return new LatencySnapshot(count, count == 0 ? 0 : total.sum() / count,
+                percentile(counts, count, 0.5), percentile(counts, count, 0.99), max.get());
+    }
+
+    private static long percentile(long[] counts, long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return 0;
+    }
+}
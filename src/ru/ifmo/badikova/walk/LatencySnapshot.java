@@ -0,0 +1,46 @@
+package ru.ifmo.badikova.walk;
+
+import javax.management.ConstructorParameters;
+
+/** Latencies of one phase of the walk, in nanoseconds. */
+public class LatencySnapshot {
+    private final long count;
+    private final long mean;
+    private final long median;
+    private final long p99;
+    private final long max;
+
+    @ConstructorParameters({"count", "mean", "median", "p99", "max"})
+    public LatencySnapshot(long count, long mean, long median, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.median = median;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    public long getMedian() {
+        return median;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d x %.3f ms (p99 %.3f ms)", count, mean / 1e6, p99 / 1e6);
+    }
+}
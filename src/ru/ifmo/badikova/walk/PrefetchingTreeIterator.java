@@ -0,0 +1,189 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Same walk as {@link FileTreeIterator}, for file systems with slow round trips.
+ * Directories are listed and their entries' attributes read on the executor ahead of
+ * the consumer, so waits for different directories overlap. At most {@code budget}
+ * listings are in flight or waiting to be consumed, the rest are listed on demand.
+ */
+class PrefetchingTreeIterator implements FileEntryIterator {
+    private final Iterator<String> roots;
+    private final ExecutorService executor;
+    private final int budget;
+    private final AtomicInteger prefetched = new AtomicInteger();
+    private final Deque<Iterator<Child>> directories = new ArrayDeque<>();
+    private FileEntry next;
+
+    private static class Child {
+        final Path path;
+        // Null when attributes could not be read.
+        final BasicFileAttributes attrs;
+        Future<List<Child>> listing;
+
+        Child(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+
+        boolean isDirectory() {
+            return attrs != null && attrs.isDirectory();
+        }
+    }
+
+    PrefetchingTreeIterator(Iterator<String> roots, ExecutorService executor, int budget) {
+        this.roots = roots;
+        this.executor = executor;
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (!directories.isEmpty()) {
+                Iterator<Child> directory = directories.peek();
+                if (directory.hasNext()) {
+                    visit(directory.next());
+                } else {
+                    directories.pop();
+                }
+            } else if (roots.hasNext()) {
+                visitRoot(roots.next());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public FileEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FileEntry result = next;
+        next = null;
+        return result;
+    }
+
+    private void visitRoot(String root) {
+        try {
+            visit(child(Paths.get(root)));
+        } catch (InvalidPathException e) {
+            WalkMetrics.error();
+            next = FileEntry.failed(root);
+        }
+    }
+
+    private void visit(Child child) {
+        if (!child.isDirectory()) {
+            if (child.attrs == null) {
+                fail(child.path);
+            } else {
+                next = new FileEntry(child.path.toString(), child.path, child.attrs);
+            }
+            return;
+        }
+        try {
+            directories.push(listing(child).iterator());
+        } catch (IOException e) {
+            fail(child.path);
+        }
+    }
+
+    private void fail(Path path) {
+        System.err.println("Failed to read file " + path.toString());
+        WalkMetrics.error();
+        next = FileEntry.failed(path.toString());
+    }
+
+    private List<Child> listing(Child directory) throws IOException {
+        if (directory.listing == null) {
+            return list(directory.path);
+        }
+        try {
+            return directory.listing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while listing " + directory.path));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            WalkMetrics.listingQueue(prefetched.decrementAndGet());
+        }
+    }
+
+    private static Child child(Path path) {
+        try {
+            return new Child(path, Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            return new Child(path, null);
+        }
+    }
+
+    private List<Child> list(Path directory) throws IOException {
+        long start = WalkMetrics.now();
+        List<Child> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                children.add(child(path));
+            }
+        } catch (DirectoryIteratorException e) {
+            System.err.println("Failed to read directory " + e.getCause().getMessage());
+            WalkMetrics.error();
+        }
+        WalkMetrics.record(WalkMetrics.Phase.LIST, start);
+        WalkMetrics.directory();
+        for (Child child : children) {
+            if (child.isDirectory()) {
+                child.listing = prefetch(child.path);
+            }
+        }
+        return children;
+    }
+
+    private Future<List<Child>> prefetch(Path directory) {
+        int depth = prefetched.incrementAndGet();
+        if (depth <= budget) {
+            try {
+                Future<List<Child>> listing = executor.submit(() -> list(directory));
+                WalkMetrics.listingQueue(depth);
+                return listing;
+            } catch (RejectedExecutionException ignored) {
+                // Walk is being closed.
+            }
+        }
+        prefetched.decrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void close() {
+        directories.clear();
+    }
+}
@@ -1,21 +1,22 @@
 package ru.ifmo.badikova.walk;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
 
 public class RecursiveWalk {
-    private static void walk(String inputFileName, String outputFileName) throws WalkException {
-        Path inputPath;
+    private static void walk(WalkOptions options) throws WalkException {
         Path outputPath;
 
         try {
-            outputPath = Paths.get(outputFileName);
+            outputPath = Paths.get(options.getOutput());
             if (outputPath.getParent() != null) {
                 Files.createDirectories(outputPath.getParent());
             }
@@ -25,40 +26,58 @@ public class RecursiveWalk {
             throw new WalkException("Cannot create parent directory");
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(Paths.get(inputFileName))) {
-            try (BufferedWriter writer = Files.newBufferedWriter(outputPath)) {
-                String file;
-                MyFileVisitor visitor = new MyFileVisitor(writer);
-                while ((file = reader.readLine()) != null) {
-                    try {
-                        Files.walkFileTree(Paths.get(file), visitor);
-                    } catch (InvalidPathException e) {
-                        writer.write(String.format("%08x %s", 0, file));
-                        writer.newLine();
-                    }
-                }
+        HashCache cache = options.loadCache();
+        ScheduledExecutorService progress = options.startMetrics();
+        try {
+            if (options.isDuplicates()) {
+                findDuplicates(options, cache, outputPath);
+            } else {
+                hashFiles(options, cache, outputPath);
+            }
+        } finally {
+            options.stopMetrics(progress);
+        }
+        options.saveCache(cache);
+    }
+
+    private static void hashFiles(WalkOptions options, HashCache cache, Path outputPath) throws WalkException {
+        String inputFileName = options.getInput();
+        String outputFileName = options.getOutput();
+        FileHasher hasher = new FileHasher(options.getAlgorithm(), cache, options.getThreads(), options.isPrefetch(),
+                options.getTreeHasher());
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(inputFileName));
+             Stream<HashResult> results = hasher.walk(reader.lines())) {
+            try (HashLineWriter writer = HashLineWriter.open(outputPath, System.lineSeparator())) {
+                writer.writeAll(results);
             } catch (IOException e) {
                 throw new WalkException("Error with opening output file: " + outputFileName);
             }
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             throw new WalkException("Error with opening input file: " + inputFileName);
         } catch (InvalidPathException e) {
             throw new WalkException("Invalid path of input file: " + inputFileName);
         }
     }
 
+    private static void findDuplicates(WalkOptions options, HashCache cache, Path outputPath) throws WalkException {
+        List<List<HashResult>> groups;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(options.getInput()))) {
+            groups = new DuplicateFinder(options.getAlgorithm(), cache, options.getThreads()).find(reader.lines());
+        } catch (IOException | UncheckedIOException e) {
+            throw new WalkException("Error with reading files from input file: " + options.getInput());
+        } catch (InvalidPathException e) {
+            throw new WalkException("Invalid path of input file: " + options.getInput());
+        }
+        try (HashLineWriter writer = HashLineWriter.open(outputPath, System.lineSeparator())) {
+            writer.writeGroups(groups);
+        } catch (IOException e) {
+            throw new WalkException("Error with opening output file: " + options.getOutput());
+        }
+    }
+
     public static void main(String[] args) {
         try {
-            if (args == null || args.length != 2) {
-                throw new WalkException("Invalid amount of arguments: 2 files expected");
-            }
-            if (args[0] == null) {
-                throw new WalkException("Invalid type of input file");
-            }
-            if (args[1] == null) {
-                throw new WalkException("Invalid type of output file");
-            }
-            RecursiveWalk.walk(args[0], args[1]);
+            RecursiveWalk.walk(WalkOptions.parse(args));
         } catch (WalkException e) {
             System.err.println(e.getMessage());
         }
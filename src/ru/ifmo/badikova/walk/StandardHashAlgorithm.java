@@ -0,0 +1,106 @@
+package ru.ifmo.badikova.walk;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+public enum StandardHashAlgorithm implements HashAlgorithm {
+    FNV1A("fnv", 4, FnvDigest::new),
+    XXHASH64("xxh64", 8, XxHash64Digest::new),
+    CRC32C("crc32c", 4, Crc32cDigest::new),
+    SHA256("sha256", 32, () -> new MessageDigestAdapter("SHA-256"));
+
+    private final String name;
+    private final int length;
+    private final Supplier<Digest> factory;
+
+    StandardHashAlgorithm(String name, int length, Supplier<Digest> factory) {
+        this.name = name;
+        this.length = length;
+        this.factory = factory;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public Digest newDigest() {
+        return factory.get();
+    }
+
+    static byte[] toBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    static byte[] toBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static class FnvDigest implements Digest {
+        private int hash = 0x811c9dc5;
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            int h = hash;
+            while (bytes.hasRemaining()) {
+                h = (h * 0x01000193) ^ (bytes.get() & 0xff);
+            }
+            hash = h;
+        }
+
+        @Override
+        public byte[] finish() {
+            return toBytes(hash);
+        }
+    }
+
+    private static class Crc32cDigest implements Digest {
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            crc.update(bytes);
+        }
+
+        @Override
+        public byte[] finish() {
+            return toBytes((int) crc.getValue());
+        }
+    }
+
+    private static class MessageDigestAdapter implements Digest {
+        private final MessageDigest digest;
+
+        MessageDigestAdapter(String algorithm) {
+            try {
+                digest = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " is not supported by this JVM", e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            digest.update(bytes);
+        }
+
+        @Override
+        public byte[] finish() {
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.ifmo.badikova.walk;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Cold publisher over a stream: each subscriber opens its own stream and pulls
+ * exactly as many elements as it requested. Signals are delivered serially on the executor.
+ */
+class StreamPublisher<T> implements Flow.Publisher<T> {
+    private final Supplier<Stream<T>> source;
+    private final Executor executor;
+
+    StreamPublisher(Supplier<Stream<T>> source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+        private Stream<T> stream;
+        private Iterator<T> iterator;
+        private boolean done;
+
+        Subscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("Positive request expected: " + n);
+            } else {
+                demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = scheduled.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (badRequest != null) {
+                finish();
+                subscriber.onError(badRequest);
+                return;
+            }
+            try {
+                if (stream == null) {
+                    stream = source.get();
+                    iterator = stream.iterator();
+                }
+                while (demand.get() > 0 && !cancelled) {
+                    if (!iterator.hasNext()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(iterator.next());
+                    demand.decrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                finish();
+                subscriber.onError(e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package ru.ifmo.badikova.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hashes files larger than one chunk as a two-level tree: chunks are hashed in parallel
+ * with positional reads, and the root is the hash of concatenated chunk hashes.
+ * Files of at most one chunk get their plain hash.
+ */
+public class TreeHasher {
+    private final HashAlgorithm algorithm;
+    private final long chunkSize;
+    private final boolean reportChunks;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param reportChunks whether chunk hashes are returned along with the root,
+     *                     so later verification may read only the changed chunks
+     */
+    public TreeHasher(HashAlgorithm algorithm, long chunkSize, boolean reportChunks, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Positive chunk size expected: " + chunkSize);
+        }
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.reportChunks = reportChunks;
+        this.pool = pool;
+    }
+
+    public TreeHasher(HashAlgorithm algorithm, long chunkSize, boolean reportChunks) {
+        this(algorithm, chunkSize, reportChunks, ForkJoinPool.commonPool());
+    }
+
+    /** Name of the scheme for {@link HashCache#load(Path, HashAlgorithm, String)}. */
+    public String getScheme() {
+        return algorithm.getName() + "/tree:" + chunkSize;
+    }
+
+    /**
+     * Hashes the file, using {@code cache} when both it and {@code attrs} are given.
+     * Root hashes with reported chunks are never taken from the cache.
+     */
+    public HashResult hash(String name, Path path, BasicFileAttributes attrs, HashCache cache) {
+        if (attrs != null && attrs.size() <= chunkSize) {
+            return new HashResult(name, Hasher.getHash(path, attrs, algorithm, cache));
+        }
+        if (attrs != null && cache != null && !reportChunks) {
+            byte[] cached = cache.lookup(path, attrs);
+            if (cached != null) {
+                WalkMetrics.file(true);
+                return new HashResult(name, cached);
+            }
+        }
+        try (FileChannel channel = Hasher.open(path)) {
+            long size = channel.size();
+            if (size <= chunkSize) {
+                return new HashResult(name, Hasher.getHash(path, attrs, algorithm, cache));
+            }
+            WalkMetrics.file(false);
+            byte[][] chunks = new byte[(int) ((size + chunkSize - 1) / chunkSize)][];
+            pool.invoke(new ChunkAction(channel, size, chunks, 0, chunks.length));
+
+            HashAlgorithm.Digest digest = algorithm.newDigest();
+            for (byte[] chunk : chunks) {
+                digest.update(ByteBuffer.wrap(chunk));
+            }
+            byte[] root = digest.finish();
+            if (attrs != null && cache != null) {
+                cache.store(path, attrs, root);
+            }
+            return new HashResult(name, root, reportChunks ? Arrays.asList(chunks) : List.of());
+        } catch (IOException | UncheckedIOException e) {
+            IOException cause = e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+            if (!Hasher.isCancelled(cause)) {
+                System.err.println(e.getMessage());
+                WalkMetrics.error();
+            }
+            return new HashResult(name, Hasher.zero(algorithm));
+        }
+    }
+
+    private class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] chunks;
+        private final int from;
+        private final int to;
+
+        ChunkAction(FileChannel channel, long size, byte[][] chunks, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkAction(channel, size, chunks, from, middle),
+                        new ChunkAction(channel, size, chunks, middle, to));
+                return;
+            }
+            long position = from * chunkSize;
+            HashAlgorithm.Digest digest = algorithm.newDigest();
+            try {
+                Hasher.hashRange(digest, channel, position, Math.min(chunkSize, size - position));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks[from] = digest.finish();
+        }
+    }
+}
@@ -1,34 +1,29 @@
 package ru.ifmo.badikova.walk;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.Buffer;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
 
 public class Walk {
 
     public static void main(String[] args) throws WalkException {
-        if (args == null || args.length != 2) {
-            throw new WalkException("Invalid amount of arguments: 2 files expected");
-        }
-        if (args[0] == null) {
-            throw new WalkException("Invalid type of input file");
-        }
-        if (args[1] == null) {
-            throw new WalkException("Invalid type of output file");
+        WalkOptions options = WalkOptions.parse(args);
+        if (options.isDuplicates()) {
+            throw new WalkException("Duplicates are searched in file trees, not supported by flat walk");
         }
 
         Path input;
         Path output;
 
         try {
-            input = Paths.get(args[0]);
-            output = Paths.get(args[1]);
+            input = Paths.get(options.getInput());
+            output = Paths.get(options.getOutput());
             if (output.getParent() != null) {
                 Files.createDirectories(output.getParent());
             }
@@ -40,22 +35,22 @@ public class Walk {
             return;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(input)) {
-            try (BufferedWriter writer = Files.newBufferedWriter(output)) {
-                String inputPath;
-                while ((inputPath = reader.readLine()) != null) {
-                    try {
-                        Path path = Paths.get(inputPath);
-                        writer.write(String.format("%08x %s\n", Hasher.getHash(path), inputPath));
-                    } catch (InvalidPathException e) {
-                        writer.write(String.format("%08x %s\n", 0,  inputPath));
-                    }
-                }
+        HashCache cache = options.loadCache();
+        ScheduledExecutorService progress = options.startMetrics();
+        FileHasher hasher = new FileHasher(options.getAlgorithm(), cache, options.getThreads(), options.isPrefetch(),
+                options.getTreeHasher());
+        try (BufferedReader reader = Files.newBufferedReader(input);
+             Stream<HashResult> results = hasher.hash(reader.lines())) {
+            try (HashLineWriter writer = HashLineWriter.open(output, "\n")) {
+                writer.writeAll(results);
             } catch (IOException e) {
                 System.err.println("Error with output file" + e.getMessage());
             }
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("Error with input file" + e.getMessage());
+        } finally {
+            options.stopMetrics(progress);
         }
+        options.saveCache(cache);
     }
 }
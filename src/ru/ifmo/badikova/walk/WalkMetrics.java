@@ -0,0 +1,195 @@
+package ru.ifmo.badikova.walk;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of the walk tools.
+ * Metrics are off until {@link #enable()} is called, which must happen before the walk starts;
+ * while they are off every probe costs a single static field read.
+ */
+public class WalkMetrics implements WalkMetricsMXBean {
+    public static final String NAME = "ru.ifmo.badikova.walk:type=WalkMetrics";
+
+    public enum Phase {
+        /** Reading attributes and opening directories during a sequential walk. */
+        WALK,
+        /** Listing a whole directory ahead of the walk. */
+        LIST,
+        OPEN,
+        READ,
+        /** Feeding bytes to the digest; includes page faults of mapped files. */
+        HASH,
+        OUTPUT
+    }
+
+    private static WalkMetrics active;
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cachedFiles = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger hashQueue = new AtomicInteger();
+    private final AtomicInteger listingQueue = new AtomicInteger();
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+
+    private WalkMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static synchronized WalkMetrics enable() {
+        if (active == null) {
+            active = new WalkMetrics();
+        }
+        return active;
+    }
+
+    /** Returns enabled metrics or {@code null}. */
+    public static WalkMetrics active() {
+        return active;
+    }
+
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+    }
+
+    /** Prints a progress line to {@code System.err} every {@code seconds} until the returned executor is shut down. */
+    public ScheduledExecutorService printProgress(long seconds) {
+        ScheduledExecutorService printer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        printer.scheduleAtFixedRate(() -> System.err.println(progress()), seconds, seconds, TimeUnit.SECONDS);
+        return printer;
+    }
+
+    public String progress() {
+        return String.format("files: %d (%.0f/s, %d cached), dirs: %d, read: %.1f MiB (%.1f MiB/s), errors: %d, queue: %d/%d",
+                getFiles(), getFilesPerSecond(), getCachedFiles(), getDirectories(),
+                getBytes() / 1048576.0, getBytesPerSecond() / 1048576.0, getErrors(),
+                getHashQueueDepth(), getListingQueueDepth());
+    }
+
+    static long now() {
+        return active == null ? 0 : System.nanoTime();
+    }
+
+    static void record(Phase phase, long start) {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.latencies.get(phase).record(System.nanoTime() - start);
+        }
+    }
+
+    static void file(boolean cached) {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            (cached ? metrics.cachedFiles : metrics.files).increment();
+        }
+    }
+
+    static void directory() {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.directories.increment();
+        }
+    }
+
+    static void bytes(long count) {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.bytes.add(count);
+        }
+    }
+
+    static void error() {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.errors.increment();
+        }
+    }
+
+    static void hashQueue(int depth) {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.hashQueue.set(depth);
+        }
+    }
+
+    static void listingQueue(int depth) {
+        WalkMetrics metrics = active;
+        if (metrics != null) {
+            metrics.listingQueue.set(depth);
+        }
+    }
+
+    private double perSecond(long count) {
+        return count * 1e9 / Math.max(System.nanoTime() - start, 1);
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum() + cachedFiles.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cachedFiles.sum();
+    }
+
+    @Override
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return perSecond(getFiles());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    @Override
+    public int getHashQueueDepth() {
+        return hashQueue.get();
+    }
+
+    @Override
+    public int getListingQueueDepth() {
+        return listingQueue.get();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        Map<String, LatencySnapshot> result = new LinkedHashMap<>();
+        latencies.forEach((phase, histogram) -> result.put(phase.name().toLowerCase(), histogram.snapshot()));
+        return result;
+    }
+}
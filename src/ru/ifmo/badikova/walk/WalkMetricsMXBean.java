@@ -0,0 +1,30 @@
+package ru.ifmo.badikova.walk;
+
+import java.util.Map;
+
+public interface WalkMetricsMXBean {
+    long getFiles();
+
+    /** Files whose hashes were taken from the cache without reading them. */
+    long getCachedFiles();
+
+    long getDirectories();
+
+    long getBytes();
+
+    /** Files and directories that could not be read. */
+    long getErrors();
+
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /** Files submitted for hashing and not yet consumed. */
+    int getHashQueueDepth();
+
+    /** Directories listed ahead of the walk and not yet consumed. */
+    int getListingQueueDepth();
+
+    /** Latencies by phase: walk, list, open, read, hash and output. */
+    Map<String, LatencySnapshot> getLatencies();
+}
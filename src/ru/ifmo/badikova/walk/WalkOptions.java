@@ -0,0 +1,219 @@
+package ru.ifmo.badikova.walk;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Command line of the walk tools: {@code [-t <threads> | -i <threads>] [-a <algorithm>] [-c <cache>] [-k <MiB> [-K]] [-d] [-m] [-p <seconds>] <input> <output>}.
+ * {@code -i} is {@code -t} that also lists directories ahead of the walk, for high-latency file systems.
+ * {@code -d} reports groups of duplicate non-empty files instead of every file hash, it cannot be combined with {@code -i}.
+ * {@code -k <MiB>} hashes larger files as trees of chunks of that size, {@code -K} also reports chunk hashes.
+ * {@code -m} exposes {@link WalkMetrics} through JMX, {@code -p <seconds>} prints them periodically.
+ */
+public class WalkOptions {
+    private String input;
+    private String output;
+    private int threads;
+    private boolean prefetch;
+    private HashAlgorithm algorithm = StandardHashAlgorithm.FNV1A;
+    private String cache;
+    private boolean duplicates;
+    private long chunkSize;
+    private boolean reportChunks;
+    private boolean jmx;
+    private long progress;
+
+    private WalkOptions() {
+    }
+
+    public static WalkOptions parse(String[] args) throws WalkException {
+        if (args == null) {
+            throw new WalkException("Invalid amount of arguments: 2 files expected");
+        }
+        WalkOptions options = new WalkOptions();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg != null && files.isEmpty() && arg.startsWith("-")) {
+                switch (arg) {
+                    case "-t":
+                    case "--threads":
+                        options.threads = parseThreads(value(args, ++i, arg));
+                        break;
+                    case "-i":
+                    case "--io-threads":
+                        options.threads = parseThreads(value(args, ++i, arg));
+                        options.prefetch = true;
+                        break;
+                    case "-a":
+                    case "--hash":
+                        options.algorithm = HashAlgorithm.forName(value(args, ++i, arg));
+                        break;
+                    case "-c":
+                    case "--cache":
+                        options.cache = value(args, ++i, arg);
+                        break;
+                    case "-d":
+                    case "--duplicates":
+                        options.duplicates = true;
+                        break;
+                    case "-k":
+                    case "--chunk":
+                        options.chunkSize = (long) parsePositive(value(args, ++i, arg), "MiB") << 20;
+                        break;
+                    case "-K":
+                    case "--report-chunks":
+                        options.reportChunks = true;
+                        break;
+                    case "-m":
+                    case "--metrics":
+                        options.jmx = true;
+                        break;
+                    case "-p":
+                    case "--progress":
+                        options.progress = parsePositive(value(args, ++i, arg), "seconds");
+                        break;
+                    default:
+                        throw new WalkException("Unknown option: " + arg);
+                }
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.size() != 2) {
+            throw new WalkException("Invalid amount of arguments: 2 files expected");
+        }
+        if (files.get(0) == null) {
+            throw new WalkException("Invalid type of input file");
+        }
+        if (files.get(1) == null) {
+            throw new WalkException("Invalid type of output file");
+        }
+        if (options.reportChunks && options.chunkSize == 0) {
+            throw new WalkException("Chunk size expected for reporting chunks");
+        }
+        if (options.duplicates && options.chunkSize != 0) {
+            throw new WalkException("Duplicates are found by whole file hashes, chunk size is not supported");
+        }
+        if (options.duplicates && options.prefetch) {
+            throw new WalkException("Duplicates are found after a sequential walk, prefetching is not supported, use -t");
+        }
+        options.input = files.get(0);
+        options.output = files.get(1);
+        return options;
+    }
+
+    private static String value(String[] args, int i, String option) throws WalkException {
+        if (i >= args.length || args[i] == null) {
+            throw new WalkException("Value expected for option " + option);
+        }
+        return args[i];
+    }
+
+    private static int parseThreads(String threads) throws WalkException {
+        return parsePositive(threads, "threads");
+    }
+
+    private static int parsePositive(String value, String name) throws WalkException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1) {
+                throw new WalkException("Positive amount of " + name + " expected: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new WalkException("Invalid amount of " + name + ": " + value);
+        }
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    /** Amount of hashing threads, {@code 0} for hashing on the walking thread. */
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Whether directories are listed ahead of the walk on the hashing threads. */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /** Hasher of files larger than requested chunk size, {@code null} when files are hashed as a whole. */
+    public TreeHasher getTreeHasher() {
+        return chunkSize == 0 ? null : new TreeHasher(algorithm, chunkSize, reportChunks);
+    }
+
+    /** Whether groups of duplicate files are reported instead of every file hash. */
+    public boolean isDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Enables metrics when they are requested.
+     * Returns progress printer to be passed to {@link #stopMetrics}, or {@code null}.
+     */
+    public ScheduledExecutorService startMetrics() throws WalkException {
+        if (!jmx && progress == 0) {
+            return null;
+        }
+        WalkMetrics metrics = WalkMetrics.enable();
+        if (jmx) {
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                throw new WalkException("Cannot register metrics: " + e.getMessage());
+            }
+        }
+        return progress > 0 ? metrics.printProgress(progress) : null;
+    }
+
+    public void stopMetrics(ScheduledExecutorService printer) {
+        if (printer != null) {
+            printer.shutdownNow();
+            System.err.println(WalkMetrics.active().progress());
+        }
+    }
+
+    /** Hash cache file name, {@code null} when files are always rehashed. */
+    public String getCache() {
+        return cache;
+    }
+
+    /** Loads the {@link #getCache() cache}, returns {@code null} when it is not requested. */
+    public HashCache loadCache() throws WalkException {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            TreeHasher tree = getTreeHasher();
+            return HashCache.load(Paths.get(cache), algorithm, tree == null ? algorithm.getName() : tree.getScheme());
+        } catch (InvalidPathException | IOException e) {
+            throw new WalkException("Error with reading cache file: " + cache);
+        }
+    }
+
+    public void saveCache(HashCache hashCache) throws WalkException {
+        if (hashCache != null) {
+            try {
+                hashCache.save();
+            } catch (IOException e) {
+                throw new WalkException("Error with writing cache file: " + cache);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.ifmo.badikova.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming XXH64 with zero seed, consumes input eight bytes at a time.
+ */
+class XxHash64Digest implements HashAlgorithm.Digest {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private long v1 = P1 + P2;
+    private long v2 = P2;
+    private long v3 = 0;
+    private long v4 = -P1;
+    private long totalLength;
+    private final ByteBuffer stash = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long merge(long acc, long value) {
+        return (acc ^ round(0, value)) * P1 + P4;
+    }
+
+    private void stripe(ByteBuffer bytes) {
+        v1 = round(v1, bytes.getLong());
+        v2 = round(v2, bytes.getLong());
+        v3 = round(v3, bytes.getLong());
+        v4 = round(v4, bytes.getLong());
+    }
+
+    @Override
+    public void update(ByteBuffer bytes) {
+        totalLength += bytes.remaining();
+        ByteOrder order = bytes.order();
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (stash.position() > 0) {
+                while (stash.hasRemaining() && bytes.hasRemaining()) {
+                    stash.put(bytes.get());
+                }
+                if (stash.hasRemaining()) {
+                    return;
+                }
+                stash.flip();
+                stripe(stash);
+                stash.clear();
+            }
+            while (bytes.remaining() >= STRIPE) {
+                stripe(bytes);
+            }
+            stash.put(bytes);
+        } finally {
+            bytes.order(order);
+        }
+    }
+
+    @Override
+    public byte[] finish() {
+        long hash;
+        if (totalLength >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = P5;
+        }
+        hash += totalLength;
+
+        stash.flip();
+        while (stash.remaining() >= 8) {
+            hash = Long.rotateLeft(hash ^ round(0, stash.getLong()), 27) * P1 + P4;
+        }
+        if (stash.remaining() >= 4) {
+            hash = Long.rotateLeft(hash ^ (stash.getInt() & 0xFFFFFFFFL) * P1, 23) * P2 + P3;
+        }
+        while (stash.hasRemaining()) {
+            hash = Long.rotateLeft(hash ^ (stash.get() & 0xFF) * P5, 11) * P1;
+        }
+        stash.clear();
+
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return StandardHashAlgorithm.toBytes(hash);
+    }
+}